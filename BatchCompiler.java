@@ -0,0 +1,129 @@
+// BatchCompiler.java
+//
+// Checks many Goo source files in one JVM and prints one merged report.
+//
+// Each file is lexed, parsed and checked by its own task on a fork-join
+// pool. Every task has its own Compilation, whose messages go into a
+// buffer belonging to that file. The report lists the files in the order
+// they were given, so it does not depend on thread scheduling.
+// In the JSON Lines and SARIF formats (see ReportError.java) the report
+// has only the messages.
+//
+// The sources are either files, or the entries of a corpus (see
+// MappedCorpus.java); either way each is mapped into memory, not read.
+
+import org.antlr.v4.runtime.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class BatchCompiler {
+	int threads;
+	boolean trace, dumpSymTab, dumpPredefineds;
+	ReportError.Format format = ReportError.Format.Text;
+	int errorLimit = 0;
+
+	// the results for one source
+	static class Unit {
+		final String name;
+		final Path file;		// the source file, or null for an entry of the corpus
+		final int entry;
+		ByteArrayOutputStream messages = new ByteArrayOutputStream();
+		ReportError errors;
+		int errorCount = 0;
+
+		Unit( Path file ) { this.name = file.toString(); this.file = file; this.entry = -1; }
+		Unit( String name, int entry ) { this.name = name; this.file = null; this.entry = entry; }
+	}
+
+	MappedCorpus corpus;	// the corpus being checked, if any
+	ForkJoinPool pool;		// runs the files, and the function bodies in them
+
+	public BatchCompiler( int threads, boolean trace, boolean dump, boolean dumpPre ) {
+		this.threads = threads;
+		this.trace = trace;
+		this.dumpSymTab = dump;
+		this.dumpPredefineds = dumpPre;
+	}
+
+	public void setReportFormat( ReportError.Format format, int errorLimit ) {
+		this.format = format;
+		this.errorLimit = errorLimit;
+	}
+
+	// Checks all the files and writes the report to out;
+	// returns the total number of errors
+	public int run( List<Path> files, PrintStream out ) {
+		Unit[] units = new Unit[files.size()];
+		for( int i=0; i<units.length; i++ )
+			units[i] = new Unit(files.get(i));
+		return run(units, out);
+	}
+
+	// Checks all the sources in the corpus, in the order of its index
+	public int run( MappedCorpus corpus, PrintStream out ) {
+		this.corpus = corpus;
+		Unit[] units = new Unit[corpus.size()];
+		for( int i=0; i<units.length; i++ )
+			units[i] = new Unit(corpus.getName(i), i);
+		return run(units, out);
+	}
+
+	private int run( Unit[] units, PrintStream out ) {
+		Predefined.getUniverse();  // build it once, before the tasks share it
+		pool = new ForkJoinPool(threads);
+		try {
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			for( final Unit u : units )
+				tasks.add(() -> { compile(u); return null; });
+			for( Future<Void> f : pool.invokeAll(tasks) )
+				f.get();
+		} catch(InterruptedException | ExecutionException e) {
+			throw new RuntimeException("batch compilation failed", e);
+		} finally {
+			pool.shutdown();
+		}
+
+		int totalErrors = 0;
+		List<ReportError> reports = new ArrayList<ReportError>();
+		for( Unit u : units ) {
+			totalErrors += u.errorCount;
+			reports.add(u.errors);
+			if (u.messages.size() == 0) continue;
+			if (format == ReportError.Format.Text)
+				out.println("=== " + u.name + " ===");
+			out.print(u.messages.toString());
+		}
+		if (format == ReportError.Format.Sarif)
+			ReportError.writeSarif(out, reports);
+		else if (format == ReportError.Format.Text)
+			out.println(totalErrors + " error(s) in " + units.length + " file(s)");
+		out.flush();
+		return totalErrors;
+	}
+
+	// lexes, parses and checks one source; safe to run concurrently
+	private void compile( Unit u ) {
+		PrintStream msgs = new PrintStream(u.messages, true);
+		Compilation comp = new Compilation(msgs, trace, dumpSymTab, dumpPredefineds);
+		comp.setPool(pool);  // so -j limits all the threads
+		GooMain.setReportFormat(comp.errors, u.name, format, errorLimit);
+		u.errors = comp.errors;
+		CharStream input;
+		try {
+			input = u.file != null ? MappedCharStream.map(u.file) : corpus.map(u.entry);
+		} catch(IOException e) {
+			comp.errors.error(Diagnostic.Id.MESSAGE, "cannot read file: " + e.getMessage());
+			comp.errors.flush();
+			u.errorCount++;
+			return;
+		}
+		GooParser.SourceFileContext tree = GooMain.parseChecked(input, comp.errors);
+		if (tree != null)
+			GooMain.runPasses(tree, comp);
+		comp.errors.flush();
+		msgs.flush();
+		u.errorCount += comp.errors.getErrorCount();
+	}
+}
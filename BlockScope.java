@@ -5,17 +5,16 @@
 //       2. the table of field names in a struct (in which case
 //          the enclosingScope field is always null)
 //
+import java.io.PrintStream;
 import java.util.*;
 
 public class BlockScope implements Scope {
-	static boolean tracing = false;
 	Scope enclosingScope; // null if global (outermost) scope
 	String scopeName = "scope block";
 	Map<String, Symbol> symbols = new LinkedHashMap<String, Symbol>();
 
     public BlockScope(Scope enclosingScope) {
     	this.enclosingScope = enclosingScope;
-    	tracing = Symbol.tracing;
     }
 
 	public Symbol resolveInCurrent(String name) {
@@ -29,15 +28,12 @@ public class BlockScope implements Scope {
 		return enclosingScope == null? null : enclosingScope.resolve(name);
 	}
 
-	public void define(Symbol sym) {
-		if (resolveInCurrent(sym.name) != null) {
-			ReportError.error(sym.getLineNumber(), 0,
-					"Duplication declaration of "+sym.name);
-			return;
-		}
+	public boolean define(Symbol sym) {
+		if (resolveInCurrent(sym.name) != null)
+			return false;
 		symbols.put(sym.name, sym);
 		sym.scope = this; // track the scope in each symbol
-		if (tracing) System.out.println("SY: Defined symbol: "+sym.name);
+		return true;
 	}
 
     public Scope getEnclosingScope() { return enclosingScope; }
@@ -49,14 +45,14 @@ public class BlockScope implements Scope {
 	    return "{ "+symbols.keySet().toString()+" }";
 	}
 	
-	public void dumpScope() {
+	public void dumpScope(PrintStream out) {
 		Collection<Symbol> items = symbols.values();
 		if (items.size() != 0) {
-			System.out.println(scopeName + " {");
+			out.println(scopeName + " {");
 			for( Symbol sy : items ) {
-				System.out.println("   "+sy.getLineNumber()+": "+sy.toString());
+				out.println("   "+sy.getLineNumber()+": "+sy.toString());
 			}
-			System.out.println("}\n");
+			out.println("}\n");
 		}
 	}
 }
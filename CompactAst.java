@@ -0,0 +1,254 @@
+// CompactAst.java
+//
+// The parse tree of a function body, lowered into a handful of int arrays
+// (a "struct of arrays"). The nodes of an ANTLR tree are objects with a
+// parent pointer, a list of children and two tokens each, and every token
+// is an object of its own; most of the memory held by a parsed file is in
+// its function bodies. GooMain.runPasses lowers the bodies of the top
+// level functions as soon as the file has been parsed, and drops their
+// parse trees; only the package level declarations, which are needed by
+// both passes, are kept as a tree.
+//
+// SymTabVisitor2 still works on parse trees. It rebuilds the tree of one
+// body with materialize just before the body is checked, and drops it
+// again with detach when it is done, so only the trees of the bodies being
+// checked (one for each thread) are in memory at the same time. The tree
+// is rebuilt exactly as it was parsed: the same node classes, node ids
+// (so that NodeMap entries still apply), invoking states and tokens.
+//
+// Nodes are numbered in pre-order from 0, the body itself. The children
+// of a node are consecutive, a terminal node (a token) is a node whose
+// rule is TERMINAL. The kind of a node is its rule index in the low 8
+// bits and the invoking state (see RuleContext) above them. Tokens are
+// numbered by their offset from the first token of the body in the token
+// stream.
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.Pair;
+import org.antlr.v4.runtime.tree.*;
+import java.lang.reflect.Constructor;
+import java.util.*;
+
+public final class CompactAst {
+	static final int TERMINAL = 0xff;	// the rule of a terminal node
+	static final int NONE = -1;		// no child, no sibling, no token
+
+	// the nodes
+	private final int[] kind;			// rule index and invoking state
+	private final int[] nodeId;			// see GooContext
+	private final int[] firstChild;
+	private final int[] nextSibling;
+	private final int[] startToken;		// the token, for a terminal node
+	private final int[] stopToken;
+
+	// the tokens
+	private final int tokenBase;		// the index of token 0 in the token stream
+	private final int[] tokenType;		// 0 => not used in the body
+	private final int[] tokenStart, tokenStop;	// character positions
+	private final int[] tokenLine, tokenCol;
+	private final Pair<TokenSource,CharStream> source;
+	private final Map<Integer,String> tokenText;	// tokens made by the lexer, such as an inserted ';'
+
+	private CompactAst( int nodes, int tokenBase, int tokens, Pair<TokenSource,CharStream> source ) {
+		kind = new int[nodes];
+		nodeId = new int[nodes];
+		firstChild = new int[nodes];
+		nextSibling = new int[nodes];
+		startToken = new int[nodes];
+		stopToken = new int[nodes];
+		this.tokenBase = tokenBase;
+		tokenType = new int[tokens];
+		tokenStart = new int[tokens];
+		tokenStop = new int[tokens];
+		tokenLine = new int[tokens];
+		tokenCol = new int[tokens];
+		this.source = source;
+		tokenText = new HashMap<Integer,String>();
+	}
+
+	public int getNodeCount() { return kind.length; }
+
+	// Lowers the tree below body; returns null if it cannot be lowered, e.g.
+	// because it has a node made by the error recovery. The tree itself is
+	// not changed. The trees of expressions can be nested very deeply, so
+	// explicit stacks are used.
+	public static CompactAst lower( GooContext body ) {
+		// count the nodes and find the range of the tokens
+		int nodes = 0;
+		int lo = Integer.MAX_VALUE, hi = -1;
+		Pair<TokenSource,CharStream> source = null;
+		ArrayDeque<ParseTree> stack = new ArrayDeque<ParseTree>();
+		stack.push(body);
+		while( !stack.isEmpty() ) {
+			ParseTree t = stack.pop();
+			nodes++;
+			Token[] toks;
+			if (t instanceof TerminalNode) {
+				if (t instanceof ErrorNode) return null;
+				toks = new Token[] { ((TerminalNode)t).getSymbol() };
+			} else if (t instanceof GooContext) {
+				GooContext g = (GooContext)t;
+				if (g.nodeId < 0 || g.exception != null || g.getRuleIndex() >= TERMINAL
+						|| g.invokingState >= 1 << 23) return null;
+				toks = new Token[] { g.start, g.stop };
+				for( int i=g.getChildCount()-1; i>=0; i-- )
+					stack.push(g.getChild(i));
+			} else
+				return null;
+			for( Token tok : toks ) {
+				if (tok == null) continue;
+				int k = tok.getTokenIndex();
+				if (k < 0 || tok.getType() <= 0 || !(tok instanceof CommonToken)) return null;
+				if (source == null) source = new Pair<>(tok.getTokenSource(), tok.getInputStream());
+				else if (tok.getInputStream() != source.b) return null;
+				lo = Math.min(lo, k);
+				hi = Math.max(hi, k);
+			}
+		}
+		if (source == null) return null;
+
+		CompactAst ast = new CompactAst(nodes, lo, hi - lo + 1, source);
+		ParseTree[] trees = new ParseTree[nodes];
+		trees[0] = body;
+		ast.nextSibling[0] = NONE;
+		int next = 1;
+		ArrayDeque<Integer> work = new ArrayDeque<Integer>();
+		work.push(0);
+		while( !work.isEmpty() ) {
+			int n = work.pop();
+			ParseTree t = trees[n];
+			trees[n] = null;
+			ast.firstChild[n] = NONE;
+			if (t instanceof TerminalNode) {
+				ast.kind[n] = TERMINAL;
+				ast.startToken[n] = ast.stopToken[n] = ast.addToken(((TerminalNode)t).getSymbol());
+				continue;
+			}
+			GooContext g = (GooContext)t;
+			ast.kind[n] = g.invokingState << 8 | g.getRuleIndex();
+			ast.nodeId[n] = g.nodeId;
+			ast.startToken[n] = ast.addToken(g.start);
+			ast.stopToken[n] = ast.addToken(g.stop);
+			int count = g.getChildCount();
+			if (count == 0) continue;
+			ast.firstChild[n] = next;
+			for( int i=0; i<count; i++ ) {
+				trees[next+i] = g.getChild(i);
+				ast.nextSibling[next+i] = i < count-1 ? next+i+1 : NONE;
+				work.push(next+i);
+			}
+			next += count;
+		}
+		return ast;
+	}
+
+	private int addToken( Token tok ) {
+		if (tok == null) return NONE;
+		int k = tok.getTokenIndex() - tokenBase;
+		if (tokenType[k] == 0) {
+			tokenType[k] = tok.getType();
+			tokenStart[k] = tok.getStartIndex();
+			tokenStop[k] = tok.getStopIndex();
+			tokenLine[k] = tok.getLine();
+			tokenCol[k] = tok.getCharPositionInLine();
+			if (tokenStop[k] < tokenStart[k])
+				tokenText.put(k, tok.getText());
+		}
+		return k;
+	}
+
+	// Rebuilds the tree below body, which must be the node this tree was
+	// lowered from, with its children removed (see detach)
+	public void materialize( GooContext body ) {
+		int n = kind.length;
+		ParseTree[] trees = new ParseTree[n];
+		Token[] tokens = new Token[tokenType.length];
+		trees[0] = body;
+		// the children of a node come after it
+		for( int i=0; i<n; i++ ) {
+			if ((kind[i] & 0xff) == TERMINAL || firstChild[i] == NONE) continue;
+			GooContext parent = (GooContext)trees[i];
+			int count = 0;
+			for( int c=firstChild[i]; c!=NONE; c=nextSibling[c] )
+				count++;
+			ParseTree[] children = new ParseTree[count];
+			int j = 0;
+			for( int c=firstChild[i]; c!=NONE; c=nextSibling[c] ) {
+				if ((kind[c] & 0xff) == TERMINAL) {
+					TerminalNodeImpl term = new TerminalNodeImpl(token(tokens, startToken[c]));
+					term.parent = parent;
+					children[j++] = trees[c] = term;
+				} else {
+					GooContext g = newContext(kind[c] & 0xff, parent, kind[c] >> 8);
+					g.nodeId = nodeId[c];
+					g.start = token(tokens, startToken[c]);
+					g.stop = token(tokens, stopToken[c]);
+					children[j++] = trees[c] = g;
+				}
+			}
+			parent.children = GooContext.childList(children);
+			setLabels(parent);
+		}
+	}
+
+	// Removes the children of body, as after it was lowered
+	public static void detach( GooContext body ) {
+		body.children = null;
+	}
+
+	private Token token( Token[] tokens, int k ) {
+		if (k == NONE) return null;
+		if (tokens[k] == null) {
+			CommonToken t = new CommonToken(source, tokenType[k], Token.DEFAULT_CHANNEL,
+				tokenStart[k], tokenStop[k]);
+			t.setLine(tokenLine[k]);
+			t.setCharPositionInLine(tokenCol[k]);
+			t.setTokenIndex(tokenBase + k);
+			String text = tokenText.get(k);
+			if (text != null) t.setText(text);
+			tokens[k] = t;
+		}
+		return tokens[k];
+	}
+
+	// the labels of Goo.g4 which are filled in by the parser
+	private static void setLabels( GooContext g ) {
+		if (g instanceof GooParser.IdentifierListContext) {
+			GooParser.IdentifierListContext il = (GooParser.IdentifierListContext)g;
+			for( TerminalNode t : il.Identifier() )
+				il.idl.add(il.Identifier = t.getSymbol());
+		} else if (g instanceof GooParser.ExpressionListContext) {
+			GooParser.ExpressionListContext el = (GooParser.ExpressionListContext)g;
+			for( GooParser.ExpressionContext e : el.expression() )
+				el.exl.add(el.expression = e);
+		} else if (g instanceof GooParser.ElementListContext) {
+			GooParser.ElementListContext el = (GooParser.ElementListContext)g;
+			for( GooParser.ElementContext e : el.element() )
+				el.exl.add(el.element = e);
+		}
+	}
+
+	// the constructors of the node classes, GooParser.<Rule>Context, by
+	// rule index
+	private static final Constructor<?>[] contexts = new Constructor<?>[GooParser.ruleNames.length];
+	static {
+		for( int r=0; r<contexts.length; r++ ) {
+			String name = GooParser.ruleNames[r];
+			name = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+			try {
+				contexts[r] = Class.forName("GooParser$" + name + "Context")
+					.getConstructor(ParserRuleContext.class, int.class);
+			} catch(ReflectiveOperationException e) {
+				throw new IllegalStateException("no node class for rule " + name, e);
+			}
+		}
+	}
+
+	private static GooContext newContext( int rule, ParserRuleContext parent, int invokingState ) {
+		try {
+			return (GooContext)contexts[rule].newInstance(parent, invokingState);
+		} catch(ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,81 @@
+// Compilation.java
+//
+// Holds everything which belongs to one compilation of one source file:
+// the error reporting, the options, the caches and the scope of
+// predefined names. None of this is kept in static fields, so several
+// compilations can run at the same time in different threads as long as
+// each one has its own Compilation instance.
+//
+// The scope of predefined names may be shared between compilations
+// because it is never modified after it has been built.
+
+import org.antlr.v4.runtime.*;
+import java.io.PrintStream;
+import java.util.concurrent.ForkJoinPool;
+
+public class Compilation {
+	final PrintStream out;          // destination for messages, traces and dumps
+	final ReportError errors;
+	final Predefined predefined;
+	final TypeTable types;          // interned composite types
+	final TypePairs typePairs = new TypePairs();  // pairs of types compared for identity
+	final UntypedConstants constants;  // shared with other compilations
+	final Names names = new Names();   // interned identifiers
+	final boolean tracing;          // the -dtsy command line flag
+	final boolean dumpSymTab;       // the -dsym command line flag
+	final boolean dumpPredefineds;  // the -dpre command line flag
+	ForkJoinPool pool;              // for checking function bodies; null => the common pool
+	NodeMap<CompactAst> bodies;     // the lowered function bodies, by node; null => none
+
+	public Compilation( PrintStream out, boolean trace, boolean dump, boolean dumpPre,
+			Predefined predefined ) {
+		this.out = out;
+		this.errors = new ReportError(out);
+		this.predefined = predefined;
+		this.types = new TypeTable(predefined.types);
+		this.constants = predefined.constants;
+		this.tracing = trace;
+		this.dumpSymTab = dump;
+		this.dumpPredefineds = dumpPre;
+	}
+
+	// uses the shared scope of predefined names
+	public Compilation( PrintStream out, boolean trace, boolean dump, boolean dumpPre ) {
+		this(out, trace, dump, dumpPre, Predefined.getUniverse());
+	}
+
+	public Compilation() {
+		this(System.out, false, false, false);
+	}
+
+	public PrintStream getOut() { return out; }
+	public ReportError getErrors() { return errors; }
+	public Predefined getPredefined() { return predefined; }
+	public TypeTable getTypes() { return types; }
+	public boolean isTracing() { return tracing; }
+
+	// the pool on which the function bodies are checked in parallel (see
+	// SymTabVisitor2.checkBodies); in batch mode, the pool running the files
+	public ForkJoinPool getPool() {
+		return pool != null ? pool : ForkJoinPool.commonPool();
+	}
+	public void setPool( ForkJoinPool pool ) { this.pool = pool; }
+
+	// the lowered tree of a function body, or null if it is still a parse
+	// tree (see CompactAst)
+	public CompactAst getBody( GooContext body ) {
+		return bodies != null ? bodies.get(body) : null;
+	}
+
+	// s is the text of the numeric constant (int or float); a bad number is
+	// reported to errs, which is not the compilation's own ReportError when
+	// the constant is in a function body checked in parallel
+	public Type.UntypedNumber newUntypedNumber( String s, ParserRuleContext ctx, ReportError errs ) {
+		Type.UntypedNumber entry = constants.parse(s);
+		if (entry == null) {
+			errs.error(ctx, Diagnostic.Id.BAD_NUMBER, s);
+			entry = constants.get(0L);
+		}
+		return entry;
+	}
+}
@@ -0,0 +1,89 @@
+// Constant.java
+//
+// The value of a constant expression. Integer values are held in a long;
+// a BigInteger is used only for an integer value which does not fit in a
+// long. Instances are immutable.
+
+import java.math.BigInteger;
+
+public final class Constant {
+	enum Kind { Int, BigInt, Float, Bool, String }
+
+	private static final BigInteger MIN_LONG = BigInteger.valueOf(Long.MIN_VALUE);
+	private static final BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
+
+	static final Constant TRUE = new Constant(Kind.Bool, 1, 0, null);
+	static final Constant FALSE = new Constant(Kind.Bool, 0, 0, null);
+
+	final Kind kind;
+	final long iValue;     // Int value, or 1/0 for Bool
+	final double dValue;   // Float value
+	final Object oValue;   // BigInteger or String value
+
+	private Constant( Kind kind, long i, double d, Object o ) {
+		this.kind = kind;  iValue = i;  dValue = d;  oValue = o;
+	}
+
+	public static Constant ofInt( long v ) {
+		return new Constant(Kind.Int, v, 0, null);
+	}
+
+	// a BigInteger value which fits in a long is stored as a long
+	public static Constant ofInt( BigInteger v ) {
+		if (v.compareTo(MIN_LONG) >= 0 && v.compareTo(MAX_LONG) <= 0)
+			return ofInt(v.longValue());
+		return new Constant(Kind.BigInt, 0, 0, v);
+	}
+
+	public static Constant ofFloat( double v ) {
+		return new Constant(Kind.Float, 0, v, null);
+	}
+
+	public static Constant ofBool( boolean b ) {
+		return b ? TRUE : FALSE;
+	}
+
+	public static Constant ofString( String s ) {
+		return new Constant(Kind.String, 0, 0, s);
+	}
+
+	// the value of an untyped numeric constant
+	public static Constant of( Type.UntypedNumber n ) {
+		if (n.isBig()) return new Constant(Kind.BigInt, 0, 0, n.getBigValue());
+		if (n.isInteger()) return ofInt(n.getIntValue());
+		return ofFloat(n.getDoubleValue());
+	}
+
+	public Kind getKind() { return kind; }
+
+	public boolean isInteger() { return kind == Kind.Int || kind == Kind.BigInt; }
+	public boolean isNumber() { return isInteger() || kind == Kind.Float; }
+
+	public long getIntValue() { return iValue; }
+	public double getDoubleValue() { return dValue; }
+	public boolean getBoolValue() { return iValue != 0; }
+	public BigInteger getBigValue() {
+		return kind == Kind.BigInt ? (BigInteger)oValue : BigInteger.valueOf(iValue);
+	}
+	public String getStringValue() { return (String)oValue; }
+
+	// any numeric value as a double (may lose precision)
+	public double toDouble() {
+		switch(kind) {
+			case Int:    return iValue;
+			case BigInt: return ((BigInteger)oValue).doubleValue();
+			default:     return dValue;
+		}
+	}
+
+	@Override
+	public String toString() {
+		switch(kind) {
+			case Int:    return Long.toString(iValue);
+			case Float:  return Double.toString(dValue);
+			case Bool:   return iValue != 0 ? "true" : "false";
+			case String: return "\"" + oValue + "\"";
+			default:     return oValue.toString();
+		}
+	}
+}
@@ -0,0 +1,174 @@
+// ConstantFolder.java
+//
+// Evaluates operators applied to constant values (see Constant.java).
+//
+// Integer arithmetic is done on longs; only when a result overflows is it
+// recomputed exactly with BigInteger. Floating point arithmetic is done on
+// doubles. A method returns null when the operation cannot be folded:
+// the operands have the wrong kinds, or (for / and %) the divisor is zero.
+// Whether the operator may be applied to the operand types at all is
+// checked separately, by TypeChecking.
+
+import java.math.BigInteger;
+
+public class ConstantFolder {
+
+	private ConstantFolder() { }
+
+	public static Constant binary( Operator op, Constant x, Constant y ) {
+		if (op == Operator.LAND || op == Operator.LOR) {
+			if (x.kind != Constant.Kind.Bool || y.kind != Constant.Kind.Bool) return null;
+			return Constant.ofBool(op == Operator.LAND ?
+					x.getBoolValue() && y.getBoolValue() : x.getBoolValue() || y.getBoolValue());
+		}
+		if (x.kind == Constant.Kind.String || y.kind == Constant.Kind.String) {
+			if (x.kind != y.kind) return null;
+			return stringOp(op, x.getStringValue(), y.getStringValue());
+		}
+		if (x.kind == Constant.Kind.Bool || y.kind == Constant.Kind.Bool) {
+			if (x.kind != y.kind) return null;
+			if (op == Operator.EQ) return Constant.ofBool(x.iValue == y.iValue);
+			if (op == Operator.NE) return Constant.ofBool(x.iValue != y.iValue);
+			return null;
+		}
+		if (x.kind == Constant.Kind.Int && y.kind == Constant.Kind.Int)
+			return intOp(op, x.iValue, y.iValue);
+		if (x.isInteger() && y.isInteger())
+			return bigOp(op, x.getBigValue(), y.getBigValue());
+		return floatOp(op, x.toDouble(), y.toDouble());
+	}
+
+	public static Constant unary( Operator op, Constant x ) {
+		switch(op) {
+			case ADD:
+				return x.isNumber() ? x : null;
+			case SUB:
+				if (x.kind == Constant.Kind.Int) {
+					if (x.iValue != Long.MIN_VALUE)
+						return Constant.ofInt(-x.iValue);
+					return Constant.ofInt(BigInteger.valueOf(x.iValue).negate());
+				}
+				if (x.kind == Constant.Kind.BigInt)
+					return Constant.ofInt(x.getBigValue().negate());
+				if (x.kind == Constant.Kind.Float)
+					return Constant.ofFloat(-x.dValue);
+				return null;
+			case XOR:  // bitwise complement
+				if (x.kind == Constant.Kind.Int)
+					return Constant.ofInt(~x.iValue);
+				if (x.kind == Constant.Kind.BigInt)
+					return Constant.ofInt(x.getBigValue().not());
+				return null;
+			case NOT:
+				return x.kind == Constant.Kind.Bool ? Constant.ofBool(!x.getBoolValue()) : null;
+			default:
+				return null;
+		}
+	}
+
+	// true if op is / or % and the divisor y is zero
+	public static boolean isDivisionByZero( Operator op, Constant y ) {
+		if (op != Operator.DIV && op != Operator.REM) return false;
+		switch(y.kind) {
+			case Int:   return y.iValue == 0;
+			case Float: return y.dValue == 0.0;
+			default:    return false;
+		}
+	}
+
+	private static Constant intOp( Operator op, long x, long y ) {
+		try {
+			switch(op) {
+				case ADD:     return Constant.ofInt(Math.addExact(x, y));
+				case SUB:     return Constant.ofInt(Math.subtractExact(x, y));
+				case MUL:     return Constant.ofInt(Math.multiplyExact(x, y));
+				case DIV:
+					if (y == 0) return null;
+					if (x == Long.MIN_VALUE && y == -1) break;  // overflows
+					return Constant.ofInt(x / y);
+				case REM:     return y == 0 ? null : Constant.ofInt(x % y);
+				case OR:      return Constant.ofInt(x | y);
+				case XOR:     return Constant.ofInt(x ^ y);
+				case AND:     return Constant.ofInt(x & y);
+				case AND_NOT: return Constant.ofInt(x & ~y);
+				case SHL:
+					if (y < 0) return null;
+					if (y < 63 && (x << y) >> y == x)
+						return Constant.ofInt(x << y);
+					break;
+				case SHR:
+					if (y < 0) return null;
+					return Constant.ofInt(y >= 64 ? (x < 0 ? -1 : 0) : x >> y);
+				case EQ: return Constant.ofBool(x == y);
+				case NE: return Constant.ofBool(x != y);
+				case LT: return Constant.ofBool(x < y);
+				case LE: return Constant.ofBool(x <= y);
+				case GT: return Constant.ofBool(x > y);
+				case GE: return Constant.ofBool(x >= y);
+				default: return null;
+			}
+		} catch(ArithmeticException e) {
+			// overflow: fall through to the exact computation
+		}
+		return bigOp(op, BigInteger.valueOf(x), BigInteger.valueOf(y));
+	}
+
+	private static Constant bigOp( Operator op, BigInteger x, BigInteger y ) {
+		switch(op) {
+			case ADD:     return Constant.ofInt(x.add(y));
+			case SUB:     return Constant.ofInt(x.subtract(y));
+			case MUL:     return Constant.ofInt(x.multiply(y));
+			case DIV:     return y.signum() == 0 ? null : Constant.ofInt(x.divide(y));
+			case REM:     return y.signum() == 0 ? null : Constant.ofInt(x.remainder(y));
+			case OR:      return Constant.ofInt(x.or(y));
+			case XOR:     return Constant.ofInt(x.xor(y));
+			case AND:     return Constant.ofInt(x.and(y));
+			case AND_NOT: return Constant.ofInt(x.andNot(y));
+			case SHL:
+				if (y.signum() < 0 || y.bitLength() > 31) return null;
+				return Constant.ofInt(x.shiftLeft(y.intValue()));
+			case SHR:
+				if (y.signum() < 0) return null;
+				return Constant.ofInt(x.shiftRight(y.bitLength() > 31 ? Integer.MAX_VALUE : y.intValue()));
+			default:
+				if (op.isRelational()) return compare(op, x.compareTo(y));
+				return null;
+		}
+	}
+
+	private static Constant floatOp( Operator op, double x, double y ) {
+		switch(op) {
+			case ADD: return Constant.ofFloat(x + y);
+			case SUB: return Constant.ofFloat(x - y);
+			case MUL: return Constant.ofFloat(x * y);
+			case DIV: return y == 0.0 ? null : Constant.ofFloat(x / y);
+			case EQ:  return Constant.ofBool(x == y);
+			case NE:  return Constant.ofBool(x != y);
+			case LT:  return Constant.ofBool(x < y);
+			case LE:  return Constant.ofBool(x <= y);
+			case GT:  return Constant.ofBool(x > y);
+			case GE:  return Constant.ofBool(x >= y);
+			default:  return null;  // integer operators
+		}
+	}
+
+	private static Constant stringOp( Operator op, String x, String y ) {
+		if (op == Operator.ADD)
+			return Constant.ofString(x.concat(y));
+		if (op.isRelational())
+			return compare(op, x.compareTo(y));
+		return null;
+	}
+
+	// converts the result of a compareTo method
+	private static Constant compare( Operator op, int c ) {
+		switch(op) {
+			case EQ: return Constant.ofBool(c == 0);
+			case NE: return Constant.ofBool(c != 0);
+			case LT: return Constant.ofBool(c < 0);
+			case LE: return Constant.ofBool(c <= 0);
+			case GT: return Constant.ofBool(c > 0);
+			default: return Constant.ofBool(c >= 0);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+// Diagnostic.java
+//
+// One message reported by a compilation (see ReportError.java).
+//
+// A diagnostic holds the id of its message template and the arguments to
+// be substituted into the template; the text is only built when the
+// message is printed. The arguments are usually strings or types, and a
+// type argument may be expensive to convert to a string.
+
+public final class Diagnostic {
+	enum Severity { Error, Warning }
+
+	// The message templates; each %s is replaced by the next argument
+	enum Id {
+		BAD_NUMBER("bad number: %s"),
+		UNKNOWN_PACKAGE("unknown/unsupported package: %s"),
+		PACKAGE_IMPORTED_TWICE("package %s imported twice"),
+		DUPLICATE_DECLARATION("Duplication declaration of %s"),	// sic; kept as the checker has always printed it
+		DUPLICATE_FIELD("Duplicate declaration of  %s"),		// likewise, for a struct field
+		BAD_ESCAPE("unsupported escape code in strings: \\%s"),
+		UNDECLARED("undeclared identifier: %s"),
+		NOT_A_TYPE("%s is not a type"),
+		UNTYPED_VARIABLES("could not determine types of variable(s)"),
+		MEMBER_NOT_FOUND("%s.%s not found"),
+		PACKAGE_NOT_FOUND("package %s not found"),
+		UNIMPLEMENTED_MEMBER("package %s, unimplemented member: %s"),
+		FIELD_NOT_FOUND("field %s not found"),
+		NOT_A_STRUCT("dot operator applied to non-struct value"),
+		NOT_INDEXABLE("only an array or slice can be indexed"),
+		CONVERSION_ARGUMENTS("type conversion requires one argument"),
+		NOT_A_FUNCTION("arguments can be passed only to a function"),
+		UNKNOWN_CALLEE("unknown function or typename: %s"),
+		ASSIGNMENT_COUNT("assignment requires equal numbers of terms on left and right"),
+		TOO_MANY_RESULTS("too many results returned from function"),
+		DIVISION_BY_ZERO("division by zero"),
+		INITIALIZATION_CYCLE("initialization cycle"),
+		INITIALIZER_COUNT("number of initializers does not match number of identifiers"),
+		INVALID_ARRAY_SIZE("invalid array size: %s"),
+		ARRAY_SIZE_NOT_INTEGER("array size is not an integer"),
+		ARRAY_SIZE_NOT_CONSTANT("array size must be a constant expression"),
+		INCOMPATIBLE("type %s is incompatible with %s"),
+		TOO_MANY_ARGUMENTS("too many arguments in function call"),
+		TOO_FEW_ARGUMENTS("too few arguments in function call"),
+		MISMATCHED_TYPES("Mismatch type: %s %s %s"),
+		UNKNOWN_OPERATOR("Unknown operator %s"),
+		BAD_SHIFT_COUNT("Can only bitshift by unsigned ints."),
+		BAD_OPERAND("%s"),		// the argument is one of the operator messages in TypeChecking
+		SYNTAX("%s"),			// the message from the ANTLR parser or lexer
+		MESSAGE("%s"),			// any other message
+		TOO_MANY_ERRORS("too many errors"),
+		TOO_MANY_VALUES("too many values in struct literal");
+
+		final String template;
+
+		Id( String template ) { this.template = template; }
+	}
+
+	final Severity severity;
+	final String file;		// may be null
+	final int line;			// 0 if unknown
+	final int col;			// 0 if unknown
+	final Id id;
+	final Object[] args;
+
+	Diagnostic( Severity severity, String file, int line, int col, Id id, Object[] args ) {
+		this.severity = severity;
+		this.file = file;
+		this.line = line;  this.col = col;
+		this.id = id;
+		this.args = args;
+	}
+
+	public Severity getSeverity() { return severity; }
+	public String getFile() { return file; }
+	public int getLine() { return line; }
+	public int getColumn() { return col; }
+	public Id getId() { return id; }
+
+	public boolean isError() { return severity == Severity.Error; }
+
+	// true if the message is about an operand whose type is unknown; an
+	// error has already been reported for whatever made the type unknown
+	public boolean isCascade() {
+		for( Object a : args )
+			if (a instanceof Type && ((Type)a).getKind() == TypeKind.Unknown)
+				return true;
+		return false;
+	}
+
+	// the text of the message, without the location
+	public String getMessage() {
+		String t = id.template;
+		if (args.length == 0) return t;
+		StringBuilder sb = new StringBuilder(t.length() + 16*args.length);
+		int k = 0, start = 0;
+		for( int i; (i = t.indexOf("%s", start)) >= 0; start = i+2 ) {
+			sb.append(t, start, i);
+			sb.append(k < args.length ? String.valueOf(args[k++]) : "");
+		}
+		sb.append(t, start, t.length());
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() { return getMessage(); }
+}
@@ -0,0 +1,97 @@
+// ExpressionParser.java
+//
+// Applies the precedence of the binary operators to an expression. The
+// grammar matches an expression as a flat sequence
+//     unaryExpr binaryOp unaryExpr binaryOp ... unaryExpr
+// with a simple loop, instead of with a left recursive rule, which needed
+// a precedence predicate and a prediction for every operator and made a
+// chain of contexts as deep as the expression is long. When the sequence
+// has been matched, build (called from the @after action of the rule)
+// rearranges it into a tree by precedence climbing. Every expression node
+// is then either
+//     unaryExpr                       an operand
+//     operand binaryOp operand        a binary operation
+// where each operand is an expression node or a unaryExpr. The nodes for
+// the inner operations are new ExpressionContexts; the node created by the
+// parser becomes the root, so the fields and accessors of the enclosing
+// rules refer to the whole expression. All the operators are left
+// associative; the precedences are given by Operator.precedence.
+//
+// The climbing uses explicit stacks, not recursion, so an expression may
+// have any number of terms.
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.tree.*;
+import java.util.Arrays;
+
+public class ExpressionParser {
+
+	static void build( GooParser.ExpressionContext ctx ) {
+		int n = ctx.getChildCount();
+		if (n < 3 || !wellFormed(ctx)) return;
+		ParserRuleContext[] operands = new ParserRuleContext[n/2+1];
+		GooParser.BinaryOpContext[] ops = new GooParser.BinaryOpContext[n/2];
+		int[] precs = new int[n/2];
+		int nx = 0, no = 0;
+		operands[nx++] = (ParserRuleContext)ctx.getChild(0);
+		for( int i=1; i<n; i+=2 ) {
+			GooParser.BinaryOpContext op = (GooParser.BinaryOpContext)ctx.getChild(i);
+			int prec = precedence(op);
+			// the operations to the left which bind at least as tightly are complete
+			while( no > 0 && precs[no-1] >= prec ) {
+				no--;  nx--;
+				operands[nx-1] = operation(ctx, operands[nx-1], ops[no], operands[nx]);
+			}
+			ops[no] = op;  precs[no++] = prec;
+			operands[nx++] = (ParserRuleContext)ctx.getChild(i+1);
+		}
+		while( no > 1 ) {
+			no--;  nx--;
+			operands[nx-1] = operation(ctx, operands[nx-1], ops[no], operands[nx]);
+		}
+		// the last operation to be done is the root
+		link(ctx, operands[0], ops[0], operands[1]);
+	}
+
+	// the operator token of an expression node, or null if it is an operand
+	static Token operator( GooParser.ExpressionContext ctx ) {
+		if (ctx.getChildCount() != 3) return null;
+		return ((ParserRuleContext)ctx.getChild(1)).getStart();
+	}
+
+	// false if a syntax error has left the sequence incomplete; the tree
+	// is not used then, so it is left as it is
+	private static boolean wellFormed( GooParser.ExpressionContext ctx ) {
+		int n = ctx.getChildCount();
+		if ((n & 1) == 0) return false;
+		for( int i=0; i<n; i++ ) {
+			ParseTree c = ctx.getChild(i);
+			if (!((i & 1) == 0 ? c instanceof GooParser.UnaryExprContext
+					: c instanceof GooParser.BinaryOpContext && precedence((GooParser.BinaryOpContext)c) > 0))
+				return false;
+		}
+		return true;
+	}
+
+	private static int precedence( GooParser.BinaryOpContext op ) {
+		Operator o = Operator.forToken(op.getStart().getType());
+		return o == null ? 0 : o.precedence();
+	}
+
+	private static GooParser.ExpressionContext operation( GooParser.ExpressionContext root,
+			ParserRuleContext left, GooParser.BinaryOpContext op, ParserRuleContext right ) {
+		GooParser.ExpressionContext e = new GooParser.ExpressionContext(root, root.invokingState);
+		link(e, left, op, right);
+		return e;
+	}
+
+	private static void link( GooParser.ExpressionContext e,
+			ParserRuleContext left, GooParser.BinaryOpContext op, ParserRuleContext right ) {
+		e.children = Arrays.asList(left, op, right);	// compact, as in GooContext
+		left.setParent(e);
+		op.setParent(e);
+		right.setParent(e);
+		e.start = left.getStart();
+		e.stop = right.getStop();
+	}
+}
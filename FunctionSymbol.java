@@ -6,11 +6,13 @@
 //      the formal parameters of the function and, by following chains,
 //      any symbol defined in an enclosing scope.
 //
+import java.io.PrintStream;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class FunctionSymbol extends Symbol implements Scope {
 	Map<String, Symbol> parameters = new LinkedHashMap<String, Symbol>();
+	int frameSize = 0;	// number of slots for the formals and locals
 
 	// used when function signature is available
     public FunctionSymbol(String name, Type signature, Scope enclosingScope) {
@@ -38,13 +40,23 @@ public class FunctionSymbol extends Symbol implements Scope {
 		return null; // not found
 	}
 
-    // define a formal parameter
-	public void define(Symbol sym) {
+    // define a formal parameter, unless there is one with the same name;
+    // the formals occupy the first slots of the frame
+	public boolean define(Symbol sym) {
+		if (parameters.containsKey(sym.name))
+			return false;
 		parameters.put(sym.name, sym);
+		sym.setDepth(0);
+		sym.setSlot(parameters.size()-1);
 		sym.setScope(this); // track the scope in each symbol
-		if (tracing) System.out.println("SY: Defined formal: "+sym.name);
+		return true;
 	}
 
+	public int getParameterCount() { return parameters.size(); }
+
+	public int getFrameSize() { return frameSize; }
+	public void setFrameSize(int n) { frameSize = n; }
+
 	public Scope getEnclosingScope() {
 	    return scope;
 	}
@@ -56,7 +68,7 @@ public class FunctionSymbol extends Symbol implements Scope {
         return "Function " + getName() + getType().toString();
     }
 
-	public void dumpScope() {
-		System.out.println(getLineNumber() + ": " + toString());
+	public void dumpScope(PrintStream out) {
+		out.println(getLineNumber() + ": " + toString());
 	}
 }
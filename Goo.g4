@@ -10,6 +10,9 @@
 grammar Goo;
 import GooLexerRules;
 
+// every parse tree node has a node id (see GooContext.java)
+options { contextSuperClass = GooContext; }
+
 // These grammar rules have been copied from https://golang.org/ref and
 // converted to follow ANTLR4 conventions.
 // The grammar rules appear in the same order.
@@ -55,7 +58,7 @@ structType
 
 fieldDeclList        // CHANGED
         :   /* empty */
-	|   (fieldDecl ';')* fieldDecl optSemi
+	|   fieldDecl (';' fieldDecl)* ';'?
         ;
 
 fieldDecl
@@ -101,7 +104,7 @@ block
 
 statementList        // CHANGED
 	:	/* empty */
-        |   (statement ';')* statement optSemi
+        |   statement (';' statement)*
         ;
 
 declaration
@@ -112,7 +115,7 @@ declaration
 
 topLevelDeclList    // CHANGED
         :    /* empty */
-        |    (topLevelDecl ';')* topLevelDecl optSemi
+        |    topLevelDecl (';' topLevelDecl)* ';'?
         ;
 
 topLevelDecl
@@ -127,7 +130,7 @@ constDecl
 
 constSpecList   // CHANGED
         :   /* empty */
-	|   (constSpec ';')* constSpec optSemi
+	|   constSpec (';' constSpec)* ';'?
         ;
 
 constSpec
@@ -153,7 +156,7 @@ typeDecl
 
 typeSpecList         // CHANGED
         :   /* empty */
-	|   (typeSpec ';')* typeSpec optSemi
+	|   typeSpec (';' typeSpec)* ';'?
         ;
 
 typeSpec
@@ -167,7 +170,7 @@ varDecl
 
 varSpecList      // CHANGED
         :   /* empty */
-	|   (varSpec ';')* varSpec optSemi
+	|   varSpec (';' varSpec)* ';'?
         ;
 
 varSpec
@@ -309,13 +312,15 @@ arguments
 //        |   '(' type ',' expressionList ','? ')'
         ;
 
+// the operands and operators are matched as a flat sequence; the @after
+// action arranges them into a tree by operator precedence
 expression              // CHANGED
-        :   unaryExpr                       # UnExp
-        |   expression mulOp expression     # NumExp
-        |   expression addOp expression     # NumExp
-        |   expression relOp expression     # RelExp
-        |   expression '&&' expression      # BoolExp
-        |   expression '||' expression      # BoolExp
+@after { ExpressionParser.build($ctx); }
+        :   unaryExpr ( binaryOp unaryExpr )*
+        ;
+
+binaryOp                // CHANGED
+        :   mulOp | addOp | relOp | '&&' | '||'
         ;
 
 unaryExpr
@@ -461,7 +466,7 @@ gotoStmt
 
 // the goal symbol of this grammar
 sourceFile
-        :   packageClause ';' importDeclList topLevelDeclList
+        :   packageClause ';' importDeclList topLevelDeclList EOF       // CHANGED
         ;
 
 packageClause
@@ -483,7 +488,7 @@ importDecl
 
 importSpecList       // CHANGED
 	:   /* empty */
-        |   (importSpec ';')* importSpec optSemi
+        |   importSpec (';' importSpec)* ';'?
         ;
 
 importSpec
@@ -496,9 +501,8 @@ importPath
         :   StringLit
         ;
 
-// An optSemi allows a semicolon to be optional if it precedes a ')' or '}' symbol
-// as allowed by the Go language specification
-optSemi
-	:   {_input.LT(1).getText().equals("}") || _input.LT(1).getText().equals(")")}?  /* empty */
-	|   ';'
-	;
+// There are no semantic predicates in this grammar. The semicolons which Go
+// inserts at the ends of lines are inserted by SemicolonInserter, between the
+// lexer and the parser. The semicolon which Go allows to be omitted before a
+// closing ')' or '}' is the optional ';' at the end of each list above (a
+// statementList needs none, because a statement may be empty).
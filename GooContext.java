@@ -0,0 +1,101 @@
+// GooContext.java
+//
+// The superclass of all the parse tree node classes generated from
+// Goo.g4 (see the contextSuperClass option in the grammar).
+//
+// Each node is given a number, its node id, while the source file is
+// parsed. The ids of the nodes in one tree are dense, 0, 1, 2, ..., so
+// information about the nodes can be held in arrays indexed by the id
+// (see NodeMap) instead of in hash tables.
+//
+// The tree is also made smaller as it is built. When a node is complete
+// its list of children, an ArrayList with room for ten, is replaced by an
+// immutable list of the exact size; most nodes have one child, and the
+// lists were as large as the nodes themselves. Nothing changes the tree
+// after it has been parsed, except that the function bodies are lowered
+// into a more compact form and put back one at a time while they are
+// checked (see CompactAst).
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.tree.*;
+import java.util.*;
+
+public class GooContext extends ParserRuleContext {
+	int nodeId = -1;	// -1 => not numbered
+
+	public GooContext() { }
+
+	public GooContext( ParserRuleContext parent, int invokingStateNumber ) {
+		super(parent, invokingStateNumber);
+	}
+
+	public int getNodeId() { return nodeId; }
+
+	// the number of nodes in the tree, if this is the root, which is
+	// numbered last
+	public int getNodeCount() { return nodeId + 1; }
+
+	// an immutable list of the exact size, as made by Numberer (see CompactAst)
+	static List<ParseTree> childList( ParseTree[] children ) {
+		switch(children.length) {
+			case 0:  return Collections.emptyList();
+			case 1:  return Collections.singletonList(children[0]);
+			default: return Arrays.asList(children);
+		}
+	}
+
+	// A parse listener which numbers the nodes as they are completed, and
+	// compacts their lists of children; it must be added to the parser with
+	// addParseListener. This is done when a rule is exited because an
+	// action of the rule may rearrange the nodes below it (see
+	// ExpressionParser).
+	public static class Numberer implements ParseTreeListener {
+		private int next = 0;
+
+		public void enterEveryRule( ParserRuleContext ctx ) {
+			if (ctx.getParent() == null)
+				next = 0;  // a new tree
+		}
+
+		public void exitEveryRule( ParserRuleContext ctx ) {
+			if (!(ctx instanceof GooContext)) return;
+			GooContext g = (GooContext)ctx;
+			numberNewNodes(g);
+			g.nodeId = next++;
+			g.children = compact(g.children);
+		}
+
+		// Numbers the nodes below g which were made by an action of the rule
+		// rather than by the parser (see ExpressionParser). They can be nested
+		// very deeply, so an explicit stack is used.
+		private void numberNewNodes( GooContext g ) {
+			ArrayDeque<GooContext> stack = null;
+			GooContext n = g;
+			for(;;) {
+				for( int i=0; i<n.getChildCount(); i++ ) {
+					ParseTree c = n.getChild(i);
+					if (c instanceof GooContext && ((GooContext)c).nodeId < 0) {
+						if (stack == null) stack = new ArrayDeque<>();
+						GooContext gc = (GooContext)c;
+						gc.nodeId = next++;
+						stack.push(gc);
+					}
+				}
+				if (stack == null || stack.isEmpty()) return;
+				n = stack.pop();
+			}
+		}
+
+		private static List<ParseTree> compact( List<ParseTree> children ) {
+			if (children == null || !(children instanceof ArrayList)) return children;
+			switch(children.size()) {
+				case 0:  return Collections.emptyList();
+				case 1:  return Collections.singletonList(children.get(0));
+				default: return Arrays.asList(children.toArray(new ParseTree[children.size()]));
+			}
+		}
+
+		public void visitTerminal( TerminalNode node ) { }
+		public void visitErrorNode( ErrorNode node ) { }
+	}
+}
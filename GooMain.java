@@ -0,0 +1,337 @@
+// GooMain.java
+//
+// Command line driver for the Goo front end.
+//
+// Usage:
+//     java GooMain [-dtsy] [-dsym] [-dpre] [-j N] [-fmt F] [-maxerr N] <file.go | directory> ...
+//     java GooMain [options] -corpus <file>
+//     java GooMain -mkcorpus <file> <file.go | directory> ...
+//
+//   -dtsy   trace symbol table operations
+//   -dsym   dump the symbol table after each pass
+//   -dpre   dump the predefined names
+//   -j N    number of worker threads for batch mode (default: all cores)
+//   -fmt F  format of the messages: text (default), jsonl or sarif
+//   -maxerr N  print at most N errors for each file (default: no limit)
+//   -pstats    print how often parsing fell back from SLL to LL (see parseSourceFile)
+//   -server         run as a compile server on standard input/output
+//   -socket <path>  run as a compile server on a Unix domain socket
+//   -corpus <file>    check every source in a corpus file (see MappedCorpus.java)
+//   -mkcorpus <file>  write the named sources into a corpus file instead of checking them
+//
+// With a single .go file the messages are printed as they are produced.
+// Otherwise every .go file named on the command line or found under a
+// named directory is checked in batch mode (see BatchCompiler.java) and
+// one merged report is printed. With -fmt jsonl or sarif only the
+// messages are printed, as JSON Lines or as one SARIF log.
+// In server mode no files are named; requests are read as described in
+// GooServer.java.
+//
+// The source files are mapped into memory (see MappedCharStream.java)
+// rather than read into strings, and a corpus is checked in batch mode
+// one mapped entry at a time.
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class GooMain {
+	// the statistics of all the parses in this JVM
+	static final ParseStats parseStats = new ParseStats();
+
+	boolean trace = false;
+	boolean dumpSymTab = false;
+	boolean dumpPredefineds = false;
+	ReportError.Format format = ReportError.Format.Text;
+	int errorLimit = 0;
+	boolean printParseStats = false;
+	int threads = Runtime.getRuntime().availableProcessors();
+	boolean serverMode = false;
+	String socketPath = null;
+	String corpusPath = null;		// -corpus
+	String newCorpusPath = null;	// -mkcorpus
+	List<String> inputs = new ArrayList<String>();
+
+	public static void main( String[] args ) throws IOException {
+		GooMain m = new GooMain();
+		if (!m.parseArgs(args)) {
+			usage();
+			System.exit(2);
+		}
+		if (m.serverMode) {
+			GooServer server = new GooServer(m.trace, m.dumpPredefineds);
+			server.setReportFormat(m.format, m.errorLimit);
+			if (m.socketPath != null)
+				server.serveSocket(Paths.get(m.socketPath));
+			else
+				server.serve(new BufferedReader(new InputStreamReader(System.in)), System.out);
+			return;
+		}
+		if (m.corpusPath != null) {
+			int errors;
+			try (MappedCorpus corpus = MappedCorpus.open(Paths.get(m.corpusPath))) {
+				BatchCompiler batch = new BatchCompiler(m.threads, m.trace, m.dumpSymTab, m.dumpPredefineds);
+				batch.setReportFormat(m.format, m.errorLimit);
+				errors = batch.run(corpus, System.out);
+			}
+			if (m.printParseStats)
+				System.err.println(parseStats);
+			System.exit(errors == 0 ? 0 : 1);
+		}
+		List<Path> files = collectSources(m.inputs);
+		if (files.isEmpty()) {
+			System.err.println("no .go files found");
+			System.exit(2);
+		}
+		if (m.newCorpusPath != null) {
+			MappedCorpus.write(Paths.get(m.newCorpusPath), files);
+			return;
+		}
+		int errors;
+		if (files.size() == 1 && Files.isRegularFile(Paths.get(m.inputs.get(0))))
+			errors = m.compileOne(files.get(0));
+		else {
+			BatchCompiler batch = new BatchCompiler(m.threads, m.trace, m.dumpSymTab, m.dumpPredefineds);
+			batch.setReportFormat(m.format, m.errorLimit);
+			errors = batch.run(files, System.out);
+		}
+		if (m.printParseStats)
+			System.err.println(parseStats);
+		System.exit(errors == 0 ? 0 : 1);
+	}
+
+	static void usage() {
+		System.err.println("usage: java GooMain [-dtsy] [-dsym] [-dpre] [-j N] [-fmt text|jsonl|sarif] [-maxerr N] [-pstats]");
+		System.err.println("                    <file.go | directory> ...");
+		System.err.println("       java GooMain [options] -corpus <file>");
+		System.err.println("       java GooMain -mkcorpus <file> <file.go | directory> ...");
+		System.err.println("       java GooMain [-dtsy] [-dpre] [-fmt F] [-maxerr N] -server | -socket <path>");
+	}
+
+	boolean parseArgs( String[] args ) {
+		for( int i=0; i<args.length; i++ ) {
+			String a = args[i];
+			if (a.equals("-dtsy"))
+				trace = true;
+			else if (a.equals("-dsym"))
+				dumpSymTab = true;
+			else if (a.equals("-dpre"))
+				dumpPredefineds = true;
+			else if (a.equals("-pstats"))
+				printParseStats = true;
+			else if (a.equals("-j") && i+1 < args.length) {
+				try {
+					threads = Integer.parseInt(args[++i]);
+				} catch(NumberFormatException e) {
+					return false;
+				}
+				if (threads < 1) return false;
+			} else if (a.equals("-fmt") && i+1 < args.length) {
+				format = parseFormat(args[++i]);
+				if (format == null) return false;
+			} else if (a.equals("-maxerr") && i+1 < args.length) {
+				try {
+					errorLimit = Integer.parseInt(args[++i]);
+				} catch(NumberFormatException e) {
+					return false;
+				}
+				if (errorLimit < 0) return false;
+			} else if (a.equals("-server"))
+				serverMode = true;
+			else if (a.equals("-socket") && i+1 < args.length) {
+				serverMode = true;
+				socketPath = args[++i];
+			} else if (a.equals("-corpus") && i+1 < args.length)
+				corpusPath = args[++i];
+			else if (a.equals("-mkcorpus") && i+1 < args.length)
+				newCorpusPath = args[++i];
+			else if (a.startsWith("-"))
+				return false;
+			else
+				inputs.add(a);
+		}
+		if (serverMode)
+			return inputs.isEmpty() && corpusPath == null && newCorpusPath == null;
+		if (corpusPath != null)
+			return inputs.isEmpty() && newCorpusPath == null;
+		return !inputs.isEmpty();
+	}
+
+	static ReportError.Format parseFormat( String s ) {
+		switch(s) {
+			case "text":  return ReportError.Format.Text;
+			case "jsonl": return ReportError.Format.JsonLines;
+			case "sarif": return ReportError.Format.Sarif;
+			default:      return null;
+		}
+	}
+
+	// Expands the command line names into a list of source files.
+	// Directories are searched recursively; the files found in a directory
+	// are sorted so that the batch report does not depend on the file system.
+	static List<Path> collectSources( List<String> names ) throws IOException {
+		List<Path> result = new ArrayList<Path>();
+		for( String name : names ) {
+			Path p = Paths.get(name);
+			if (Files.isDirectory(p)) {
+				List<Path> found = new ArrayList<Path>();
+				try (java.util.stream.Stream<Path> walk = Files.walk(p)) {
+					walk.filter(f -> Files.isRegularFile(f) && f.toString().endsWith(".go"))
+						.forEach(found::add);
+				}
+				Collections.sort(found);
+				result.addAll(found);
+			} else
+				result.add(p);
+		}
+		return result;
+	}
+
+	// Checks one file, printing messages on standard output;
+	// returns the number of errors
+	int compileOne( Path file ) throws IOException {
+		Compilation comp = new Compilation(System.out, trace, dumpSymTab, dumpPredefineds);
+		setReportFormat(comp.errors, file.toString(), format, errorLimit);
+		GooParser.SourceFileContext tree = parseChecked(MappedCharStream.map(file), comp.errors);
+		if (tree != null)
+			runPasses(tree, comp);
+		comp.errors.flush();
+		if (format == ReportError.Format.Sarif)
+			ReportError.writeSarif(System.out, Collections.singletonList(comp.errors));
+		return comp.errors.getErrorCount();
+	}
+
+	static void setReportFormat( ReportError errs, String fileName, ReportError.Format format, int limit ) {
+		errs.setFileName(fileName);
+		errs.setFormat(format);
+		errs.setErrorLimit(limit);
+	}
+
+	// Creates a parser for the input; if errs is not null, syntax errors are
+	// appended to it instead of being printed on the console
+	static GooParser newParser( CharStream input, final StringBuilder errs ) {
+		GooScanner lexer = new GooScanner(input);
+		GooParser parser = new GooParser(new CommonTokenStream(lexer));
+		parser.addParseListener(new GooContext.Numberer());
+		if (errs != null) {
+			setErrorListener(lexer, parser, new BaseErrorListener() {
+				@Override
+				public void syntaxError(Recognizer<?,?> recognizer, Object offendingSymbol,
+						int line, int col, String msg, RecognitionException e) {
+					errs.append("line ").append(line).append(':').append(col)
+						.append(' ').append(msg).append('\n');
+				}
+			});
+		}
+		return parser;
+	}
+
+	// Creates a parser for the input which reports syntax errors to errs
+	static GooParser newParser( CharStream input, final ReportError errs ) {
+		GooScanner lexer = new GooScanner(input);
+		GooParser parser = new GooParser(new CommonTokenStream(lexer));
+		parser.addParseListener(new GooContext.Numberer());
+		setErrorListener(lexer, parser, new BaseErrorListener() {
+			@Override
+			public void syntaxError(Recognizer<?,?> recognizer, Object offendingSymbol,
+					int line, int col, String msg, RecognitionException e) {
+				errs.error(line, col, Diagnostic.Id.SYNTAX, msg);
+			}
+		});
+		return parser;
+	}
+
+	// Parses a source file in two stages. The first uses SLL prediction,
+	// which is much cheaper than full LL but can fail on some inputs which
+	// are valid, and gives up at the first syntax error. Only if it fails
+	// is the input parsed again, with full LL prediction and the parser's
+	// own error strategy and listeners, so syntax errors are reported
+	// exactly as by a plain LL parse.
+	static GooParser.SourceFileContext parseSourceFile( GooParser parser ) {
+		ANTLRErrorStrategy strategy = parser.getErrorHandler();
+		List<ANTLRErrorListener> listeners =
+			new ArrayList<ANTLRErrorListener>(parser.getErrorListeners());
+		long start = System.nanoTime();
+		parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+		parser.setErrorHandler(new BailErrorStrategy());
+		parser.removeErrorListeners();
+		GooParser.SourceFileContext tree = null;
+		try {
+			tree = parser.sourceFile();
+		} catch(ParseCancellationException e) {
+			// fall back to LL below
+		} finally {
+			parser.setErrorHandler(strategy);
+			for( ANTLRErrorListener l : listeners )
+				parser.addErrorListener(l);
+			parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+		}
+		long sll = System.nanoTime() - start;
+		if (tree != null) {
+			parseStats.recordSll(sll);
+			return tree;
+		}
+		start = System.nanoTime();
+		parser.reset();  // rewinds the token stream
+		tree = parser.sourceFile();
+		parseStats.recordFallback(sll, System.nanoTime() - start);
+		return tree;
+	}
+
+	private static void setErrorListener( GooScanner lexer, Parser parser, ANTLRErrorListener listener ) {
+		lexer.removeErrorListeners();
+		lexer.addErrorListener(listener);
+		parser.removeErrorListeners();
+		parser.addErrorListener(listener);
+	}
+
+	// The number of syntax errors found by the lexer and the parser. Every
+	// driver runs the passes only if there are none.
+	static int syntaxErrors( GooParser parser ) {
+		int n = parser.getNumberOfSyntaxErrors();
+		TokenSource lexer = parser.getTokenStream().getTokenSource();
+		if (lexer instanceof GooScanner)
+			n += ((GooScanner)lexer).getNumberOfErrors();
+		return n;
+	}
+
+	// Parses the input, reporting syntax errors to errs; returns the tree, or
+	// null if there are syntax errors. Nothing refers to the parser and the
+	// token stream afterwards, so they can be freed before the passes run.
+	static GooParser.SourceFileContext parseChecked( CharStream input, ReportError errs ) {
+		GooParser parser = newParser(input, errs);
+		GooParser.SourceFileContext tree = parseSourceFile(parser);
+		return syntaxErrors(parser) == 0 ? tree : null;
+	}
+
+	// Runs the two symbol table / type checking passes over a parse tree
+	static void runPasses( GooParser.SourceFileContext tree, Compilation comp ) {
+		lowerBodies(tree, comp);
+		SymTabVisitor1 pass1 = new SymTabVisitor1(comp);
+		pass1.visit(tree);
+		SymTabVisitor2 pass2 = new SymTabVisitor2(comp);
+		pass2.setScopes(pass1.getScopes());
+		pass2.setDeclarations(pass1.getDeclarations());
+		pass2.visit(tree);
+		comp.errors.flush();
+	}
+
+	// Lowers the bodies of the top level functions (see CompactAst), and
+	// drops their parse trees
+	static void lowerBodies( GooParser.SourceFileContext tree, Compilation comp ) {
+		if (tree.topLevelDeclList() == null) return;
+		comp.bodies = new NodeMap<CompactAst>(tree.getNodeCount());
+		for( GooParser.TopLevelDeclContext decl : tree.topLevelDeclList().topLevelDecl() ) {
+			GooParser.FunctionDeclContext fd = decl.functionDecl();
+			if (fd == null || fd.function() == null) continue;
+			GooParser.FunctionBodyContext body = fd.function().functionBody();
+			CompactAst ast = CompactAst.lower(body);
+			if (ast == null) continue;
+			comp.bodies.put(body, ast);
+			CompactAst.detach(body);
+		}
+	}
+}
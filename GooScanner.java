@@ -0,0 +1,422 @@
+// GooScanner.java
+//
+// A hand-written lexer for Goo, used in place of the lexer which ANTLR
+// generates from GooLexerRules.g4. It makes the same tokens, with the
+// token types of GooParser, but without running the lexer ATN: each kind
+// of token is recognized by a loop over its characters, the class of a
+// character is looked up in a table, and the operators and keywords are
+// recognized by a DFA (a trie) built from the literal names in the
+// parser's vocabulary, so that they always agree with the grammar. The
+// text of a token is not copied; a CommonToken made without text takes
+// it from the input only when it is asked for.
+//
+// The semicolons which Go inserts at the ends of lines are inserted here,
+// by the rules in SemicolonInserter, so the tokens do not need to pass
+// through one. Comments and white space are skipped; a /* */ comment
+// which contains a newline counts as a newline.
+//
+// Literals follow the Go specification: decimal, octal and hexadecimal
+// integers; floating point numbers with a fraction and/or an exponent;
+// rune literals; and interpreted ("...") and raw (`...`) strings.
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Pair;
+import java.util.ArrayList;
+import java.util.List;
+
+public class GooScanner implements TokenSource {
+	static final int IDENT = tokenType("Identifier");
+	static final int INT = tokenType("IntLit");
+	static final int FLOAT = tokenType("FloatLit");
+	static final int RUNE = tokenType("RuneLit");
+	static final int STRING = tokenType("StringLit");
+	static final int SEMI = tokenType("';'");
+
+	// the classes of the ASCII characters
+	static final byte OTHER = 0, SPACE = 1, NEWLINE = 2, LETTER = 3, DIGIT = 4, DOT = 5,
+		SLASH = 6, QUOTE = 7, BACKQUOTE = 8, APOSTROPHE = 9, OPERATOR = 10;
+	static final byte[] charClass = new byte[128];
+
+	// The DFA for the operators and the keywords: next[s*128+c] is the state
+	// after character c in state s, or 0 if there is none, and accepts[s] is
+	// the token type recognized in state s, or 0. The start state is 1.
+	static final int START = 1;
+	static final int[] next;
+	static final int[] accepts;
+
+	static {
+		charClass[' '] = charClass['\t'] = charClass['\r'] = SPACE;
+		charClass['\n'] = NEWLINE;
+		for( int c='a'; c<='z'; c++ ) charClass[c] = LETTER;
+		for( int c='A'; c<='Z'; c++ ) charClass[c] = LETTER;
+		charClass['_'] = LETTER;
+		for( int c='0'; c<='9'; c++ ) charClass[c] = DIGIT;
+		charClass['.'] = DOT;
+		charClass['/'] = SLASH;
+		charClass['"'] = QUOTE;
+		charClass['`'] = BACKQUOTE;
+		charClass['\''] = APOSTROPHE;
+
+		Vocabulary v = GooParser.VOCABULARY;
+		List<String> texts = new ArrayList<>();
+		List<Integer> types = new ArrayList<>();
+		int size = START+1;
+		for( int t=1; t<=v.getMaxTokenType(); t++ ) {
+			String lit = v.getLiteralName(t);  // e.g. "'+'" or "'break'"
+			if (lit == null || !isFixedToken(lit)) continue;
+			texts.add(lit.substring(1, lit.length()-1));
+			types.add(t);
+			size += lit.length()-2;
+		}
+		next = new int[size*128];
+		accepts = new int[size];
+		int states = START+1;
+		for( int i=0; i<texts.size(); i++ ) {
+			String s = texts.get(i);
+			int state = START;
+			for( int k=0; k<s.length(); k++ ) {
+				char c = s.charAt(k);
+				if (next[state*128+c] == 0)
+					next[state*128+c] = states++;
+				state = next[state*128+c];
+				if (charClass[c] == OTHER)
+					charClass[c] = OPERATOR;
+			}
+			accepts[state] = types.get(i);
+		}
+	}
+
+	CharStream input;
+	Pair<TokenSource,CharStream> source;
+	TokenFactory<?> factory = CommonTokenFactory.DEFAULT;
+	final List<ANTLRErrorListener> listeners = new ArrayList<>();
+
+	int line, col;			// the position of the next character
+	int start, startLine, startCol;	// where the current token starts
+	boolean insertSemi;		// a ';' goes at the next end of a line
+	int lastStop, lastLine, lastCol;	// just after the last token
+	int errors;				// reported since the input was set
+
+	public GooScanner( CharStream input ) {
+		listeners.add(ConsoleErrorListener.INSTANCE);
+		setInputStream(input);
+	}
+
+	// starts again on new input
+	public void setInputStream( CharStream input ) {
+		this.input = input;
+		this.source = new Pair<>(this, input);
+		line = lastLine = 1;
+		col = lastCol = 0;
+		lastStop = -1;
+		insertSemi = false;
+		errors = 0;
+	}
+
+	public void addErrorListener( ANTLRErrorListener listener ) {
+		listeners.add(listener);
+	}
+
+	public void removeErrorListeners() {
+		listeners.clear();
+	}
+
+	@Override
+	public Token nextToken() {
+		for(;;) {
+			start = input.index();
+			startLine = line;
+			startCol = col;
+			int c = input.LA(1);
+			if (c == IntStream.EOF) {
+				if (insertSemi) return semicolon();
+				return factory.create(source, Token.EOF, null, Token.DEFAULT_CHANNEL,
+					start, start-1, line, col);
+			}
+			int cls = c < 128 ? charClass[c] : Character.isLetter(c) ? LETTER : OTHER;
+			Token t = null;
+			switch(cls) {
+			case SPACE:
+				consume(c);
+				continue;
+			case NEWLINE:
+				if (insertSemi) return semicolon();
+				consume(c);
+				continue;
+			case LETTER:
+				return identifier();
+			case DIGIT:
+				t = number();
+				break;
+			case DOT:
+				t = isDigit(input.LA(2)) ? number() : operator();
+				break;
+			case SLASH:
+				if (input.LA(2) == '/') {
+					while( (c = input.LA(1)) != '\n' && c != IntStream.EOF )
+						consume(c);
+					continue;
+				}
+				if (input.LA(2) == '*') {
+					if (blockComment() && insertSemi) return semicolon();
+					continue;
+				}
+				t = operator();
+				break;
+			case QUOTE:
+				t = string();
+				break;
+			case BACKQUOTE:
+				t = rawString();
+				break;
+			case APOSTROPHE:
+				t = rune();
+				break;
+			case OPERATOR:
+				t = operator();
+				break;
+			default:
+				consume(c);
+				if (c != 0xFEFF || start != 0)	// a byte order mark is ignored
+					error();
+				continue;
+			}
+			if (t != null) return t;
+		}
+	}
+
+	// the token from start to the current position
+	private Token emit( int type ) {
+		int stop = input.index()-1;
+		Token t = factory.create(source, type, null, Token.DEFAULT_CHANNEL,
+			start, stop, startLine, startCol);
+		insertSemi = SemicolonInserter.endsLine[type];
+		lastStop = stop;
+		lastLine = line;
+		lastCol = col;
+		return t;
+	}
+
+	// an inserted ';', an empty token just after the last token
+	private Token semicolon() {
+		insertSemi = false;
+		return factory.create(source, SEMI, ";", Token.DEFAULT_CHANNEL,
+			lastStop+1, lastStop, lastLine, lastCol);
+	}
+
+	private void consume( int c ) {
+		input.consume();
+		if (c == '\n') {
+			line++;
+			col = 0;
+		} else
+			col++;
+	}
+
+	private Token identifier() {
+		int state = START;	// the keyword DFA
+		int c = input.LA(1);
+		do {
+			state = state != 0 && c < 128 ? next[state*128+c] : 0;
+			consume(c);
+			c = input.LA(1);
+		} while( c < 128 ? c >= 0 && (charClass[c] == LETTER || charClass[c] == DIGIT)
+				: Character.isLetterOrDigit(c) );
+		return emit(state != 0 && accepts[state] != 0 ? accepts[state] : IDENT);
+	}
+
+	private Token number() {
+		int c = input.LA(1);
+		if (c == '0' && (input.LA(2) == 'x' || input.LA(2) == 'X')) {
+			consume(c);
+			consume(input.LA(1));
+			if (!isHexDigit(input.LA(1))) {
+				error();
+				return null;
+			}
+			while( isHexDigit(c = input.LA(1)) )
+				consume(c);
+			return emit(INT);
+		}
+		boolean isFloat = false;
+		while( isDigit(c = input.LA(1)) )
+			consume(c);
+		if (c == '.') {
+			isFloat = true;
+			consume(c);
+			while( isDigit(c = input.LA(1)) )
+				consume(c);
+		}
+		if (c == 'e' || c == 'E') {
+			int k = input.LA(2) == '+' || input.LA(2) == '-' ? 3 : 2;
+			if (isDigit(input.LA(k))) {
+				isFloat = true;
+				for( ; k>1; k-- )
+					consume(input.LA(1));
+				while( isDigit(c = input.LA(1)) )
+					consume(c);
+			}
+		}
+		return emit(isFloat ? FLOAT : INT);
+	}
+
+	// the longest operator which starts here
+	private Token operator() {
+		int state = START, type = 0, len = 0;
+		for( int k=1; ; k++ ) {
+			int c = input.LA(k);
+			if (c < 0 || c >= 128 || (state = next[state*128+c]) == 0)
+				break;
+			if (accepts[state] != 0) {
+				type = accepts[state];
+				len = k;
+			}
+		}
+		if (type == 0) {
+			consume(input.LA(1));
+			error();
+			return null;
+		}
+		for( int k=0; k<len; k++ )
+			input.consume();
+		col += len;
+		return emit(type);
+	}
+
+	// "...", which cannot contain a newline
+	private Token string() {
+		consume('"');
+		for(;;) {
+			int c = input.LA(1);
+			if (c == '\n' || c == IntStream.EOF) {
+				error();
+				return null;
+			}
+			consume(c);
+			if (c == '"')
+				return emit(STRING);
+			if (c == '\\' && (c = input.LA(1)) != '\n' && c != IntStream.EOF)
+				consume(c);
+		}
+	}
+
+	// `...`, which can
+	private Token rawString() {
+		consume('`');
+		for(;;) {
+			int c = input.LA(1);
+			if (c == IntStream.EOF) {
+				error();
+				return null;
+			}
+			consume(c);
+			if (c == '`')
+				return emit(STRING);
+		}
+	}
+
+	// a character or an escape sequence (such as \n or \x41) in quotes
+	private Token rune() {
+		consume('\'');
+		int c = input.LA(1);
+		boolean ok = c != '\'';
+		if (c == '\\') {
+			consume(c);
+			while( (c = input.LA(1)) != '\n' && c != IntStream.EOF ) {
+				consume(c);
+				if (input.LA(1) == '\'') break;
+			}
+		} else if (ok && c != '\n' && c != IntStream.EOF)
+			consume(c);
+		if (ok && input.LA(1) == '\'') {
+			consume('\'');
+			return emit(RUNE);
+		}
+		error();
+		return null;
+	}
+
+	// skips a /* */ comment, returning true if it contains a newline
+	private boolean blockComment() {
+		int line0 = line;
+		consume('/');
+		consume('*');
+		for(;;) {
+			int c = input.LA(1);
+			if (c == IntStream.EOF) {
+				error();
+				return false;
+			}
+			consume(c);
+			if (c == '*' && input.LA(1) == '/') {
+				consume('/');
+				return line > line0;
+			}
+		}
+	}
+
+	// reports the characters from start to the current position, as
+	// the ANTLR lexer does for input which is not a token
+	private void error() {
+		String text = input.getText(Interval.of(start, input.index()-1));
+		String msg = "token recognition error at: '" + escape(text) + "'";
+		errors++;
+		for( ANTLRErrorListener listener : listeners )
+			listener.syntaxError(null, null, startLine, startCol, msg, null);
+	}
+
+	private static String escape( String s ) {
+		return s.replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t");
+	}
+
+	private static boolean isDigit( int c ) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isHexDigit( int c ) {
+		return c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+	}
+
+	// a literal name which is always the same text: printable ASCII, with
+	// no quotes or escapes
+	private static boolean isFixedToken( String lit ) {
+		if (lit.length() < 3) return false;
+		for( int i=1; i<lit.length()-1; i++ ) {
+			char c = lit.charAt(i);
+			if (c <= ' ' || c >= 127 || c == '\'' || c == '\\') return false;
+		}
+		return true;
+	}
+
+	// the token type with the given symbolic name, or literal name such as "';'"
+	private static int tokenType( String name ) {
+		Vocabulary v = GooParser.VOCABULARY;
+		for( int t=0; t<=v.getMaxTokenType(); t++ )
+			if (name.equals(v.getSymbolicName(t)) || name.equals(v.getLiteralName(t)))
+				return t;
+		return -1;
+	}
+
+	// the number of errors reported since the input was set; the parser
+	// does not count them
+	public int getNumberOfErrors() { return errors; }
+
+	@Override
+	public int getLine() { return line; }
+
+	@Override
+	public int getCharPositionInLine() { return col; }
+
+	@Override
+	public CharStream getInputStream() { return input; }
+
+	@Override
+	public String getSourceName() { return input.getSourceName(); }
+
+	@Override
+	public void setTokenFactory( TokenFactory<?> factory ) { this.factory = factory; }
+
+	@Override
+	public TokenFactory<?> getTokenFactory() { return factory; }
+}
@@ -0,0 +1,136 @@
+// GooServer.java
+//
+// A long-lived compile server. Keeping one JVM alive means that the
+// parser's ATN/DFA caches (which are shared by all GooParser instances)
+// and the scope of predefined names stay warm between requests.
+//
+// Requests are single lines of text:
+//     check <path>     check the file, reply with its diagnostics
+//     dump <path>      as check, but also dump the symbol tables
+//     stats            the parse statistics (see ParseStats.java)
+//     quit             end the session
+// Every reply is the output of the request followed by a line
+//     END <n>
+// where n is the number of errors found (-1 for a malformed request).
+// The messages are reported as by the command line driver for a single
+// file, in the format and up to the limit given by -fmt and -maxerr.
+//
+// The server reads from standard input and writes to standard output,
+// or it accepts connections on a Unix domain socket; connections are
+// handled one after the other.
+
+import org.antlr.v4.runtime.*;
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.Collections;
+
+public class GooServer {
+	boolean trace;
+	boolean dumpPredefineds;
+	ReportError.Format format = ReportError.Format.Text;
+	int errorLimit = 0;
+
+	// one lexer and parser are reused for all requests
+	GooScanner lexer = new GooScanner(null);
+	GooParser parser = new GooParser(null);
+	ReportError errors;		// of the request being handled
+
+	public GooServer( boolean trace, boolean dumpPre ) {
+		this.trace = trace;
+		this.dumpPredefineds = dumpPre;
+		BaseErrorListener listener = new BaseErrorListener() {
+			@Override
+			public void syntaxError(Recognizer<?,?> recognizer, Object offendingSymbol,
+					int line, int col, String msg, RecognitionException e) {
+				errors.error(line, col, Diagnostic.Id.SYNTAX, msg);
+			}
+		};
+		lexer.removeErrorListeners();
+		lexer.addErrorListener(listener);
+		parser.removeErrorListeners();
+		parser.addErrorListener(listener);
+		parser.addParseListener(new GooContext.Numberer());
+		Predefined.getUniverse();  // build the predefined names now
+	}
+
+	public void setReportFormat( ReportError.Format format, int errorLimit ) {
+		this.format = format;
+		this.errorLimit = errorLimit;
+	}
+
+	// Handles requests until "quit" or end of input
+	public void serve( BufferedReader in, PrintStream out ) throws IOException {
+		String line;
+		while( (line = in.readLine()) != null ) {
+			line = line.trim();
+			if (line.isEmpty()) continue;
+			if (line.equals("quit")) break;
+			if (line.equals("stats")) {
+				out.println(GooMain.parseStats);
+				out.println("END 0");
+				out.flush();
+				continue;
+			}
+			int sp = line.indexOf(' ');
+			String cmd = sp < 0 ? line : line.substring(0, sp);
+			String arg = sp < 0 ? "" : line.substring(sp+1).trim();
+			if (arg.isEmpty() || !(cmd.equals("check") || cmd.equals("dump"))) {
+				out.println("bad request: " + line);
+				out.println("END -1");
+			} else
+				handle(Paths.get(arg), cmd.equals("dump"), out);
+			out.flush();
+		}
+	}
+
+	// Accepts connections on a Unix domain socket, one at a time
+	public void serveSocket( Path socketFile ) throws IOException {
+		Files.deleteIfExists(socketFile);
+		UnixDomainSocketAddress addr = UnixDomainSocketAddress.of(socketFile);
+		try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+			server.bind(addr);
+			for( ; ; ) {
+				try (SocketChannel ch = server.accept()) {
+					BufferedReader in = new BufferedReader(Channels.newReader(ch, "UTF-8"));
+					PrintStream out = new PrintStream(Channels.newOutputStream(ch), false, "UTF-8");
+					serve(in, out);
+				} catch(IOException e) {
+					System.err.println("connection failed: " + e.getMessage());
+				}
+			}
+		} finally {
+			Files.deleteIfExists(socketFile);
+		}
+	}
+
+	// checks one file and writes the reply
+	private void handle( Path file, boolean dump, PrintStream out ) {
+		Compilation comp = new Compilation(out, trace, dump, dumpPredefineds);
+		GooMain.setReportFormat(comp.errors, file.toString(), format, errorLimit);
+		errors = comp.errors;
+		CharStream input = null;
+		try {
+			// read, not mapped (see MappedCharStream.java): an editor may
+			// rewrite the file while the server is reading it
+			input = CharStreams.fromPath(file);
+		} catch(IOException e) {
+			errors.error(Diagnostic.Id.MESSAGE, "cannot read file: " + e.getMessage());
+		}
+		if (input != null) {
+			lexer.setInputStream(input);
+			parser.setTokenStream(new CommonTokenStream(lexer));
+			GooParser.SourceFileContext tree = GooMain.parseSourceFile(parser);
+			int syntaxErrors = GooMain.syntaxErrors(parser);
+			parser.setTokenStream(null);	// the tokens are not needed any more
+			if (syntaxErrors == 0)
+				GooMain.runPasses(tree, comp);
+		}
+		errors.flush();
+		if (format == ReportError.Format.Sarif)
+			ReportError.writeSarif(out, Collections.singletonList(errors));
+		out.println("END " + errors.getErrorCount());
+		errors = null;
+	}
+}
@@ -29,6 +29,15 @@ public class LabelSymbol extends Symbol { // a label used in goto statements
         this.scope = scope;
         line = id.getLine();
     }
+
+	// as above, with the name of id as pooled by the compilation's Names
+    public LabelSymbol(Token id, String name, Scope scope) {
+        this.name = name;
+        this.kind = Kind.Label;
+        this.type = Type.labelType;
+        this.scope = scope;
+        line = id.getLine();
+    }
     
     public int getLocation() { return location; }
     public void setLocation(int loc) { location = loc; }
@@ -0,0 +1,225 @@
+// MappedCharStream.java
+//
+// A CharStream over UTF-8 source text in a memory-mapped file. It is used
+// instead of CharStreams.fromPath, which first decodes the whole file
+// into an array on the heap; here the characters are decoded from the
+// mapped bytes as the lexer reads them, and the text of a token is made
+// only when it is asked for.
+//
+// As in the ANTLR streams, the index of a character is its position in
+// code points. When the text is all ASCII, which is checked when the
+// stream is made, that is also its byte offset. Otherwise the byte offset
+// of every STEP'th code point is recorded, and the offset of any other
+// code point is found by stepping forward from the one before it; the
+// lexer reads forward, so the offset of the next character is kept. A
+// malformed UTF-8 sequence is read as U+FFFD, as CharStreams.fromPath
+// would read it.
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.Interval;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+public class MappedCharStream implements CharStream {
+	static final int STEP = 32;
+
+	final ByteBuffer bytes;	// the text, from 0 to limit
+	final int limit;
+	final String name;
+	final int size;			// the number of code points
+	final int[] offsets;	// offsets[i] is the byte offset of code point i*STEP; null if ASCII
+	int index = 0;			// the next code point
+	int pos = 0;			// and its byte offset
+
+	// maps the whole of a file
+	public static MappedCharStream map( Path file ) throws IOException {
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			long n = ch.size();
+			if (n > Integer.MAX_VALUE)
+				throw new IOException(file + " is too large");
+			return new MappedCharStream(ch.map(FileChannel.MapMode.READ_ONLY, 0, n), file.toString());
+		}
+	}
+
+	public MappedCharStream( ByteBuffer bytes, String name ) {
+		this.bytes = bytes;
+		this.limit = bytes.limit();
+		this.name = name;
+		int p = 0;
+		while( p < limit && bytes.get(p) >= 0 )
+			p++;
+		if (p == limit) {
+			size = limit;
+			offsets = null;
+			return;
+		}
+		int[] offs = new int[limit/STEP + 1];
+		int n = 0;
+		for( p=0; p<limit; p+=length(p) ) {
+			if (n % STEP == 0)
+				offs[n / STEP] = p;
+			n++;
+		}
+		size = n;
+		offsets = offs;
+	}
+
+	// the number of bytes in the character at byte offset p
+	private int length( int p ) {
+		int n = scan(p);
+		return n < 0 ? -n : n;
+	}
+
+	// the code point at byte offset p
+	private int decode( int p ) {
+		int b = bytes.get(p) & 0xFF;
+		if (b < 0x80) return b;
+		int len = scan(p);
+		if (len < 0) return 0xFFFD;
+		int c = b & (0x7F >> len);
+		for( int k=1; k<len; k++ )
+			c = (c << 6) | (bytes.get(p+k) & 0x3F);
+		return c;
+	}
+
+	// The length of the UTF-8 sequence at byte offset p, or minus the
+	// length of a malformed one. As in the JDK's decoder, a malformed
+	// sequence is the longest prefix of a valid one, or else one byte; an
+	// encoded surrogate is malformed as a whole.
+	private int scan( int p ) {
+		int b = bytes.get(p) & 0xFF;
+		if (b < 0x80) return 1;
+		int len, lo = 0x80, hi = 0xBF;	// the range of the second byte
+		if (b < 0xC2) return -1;
+		else if (b < 0xE0) len = 2;
+		else if (b < 0xF0) {
+			len = 3;
+			if (b == 0xE0) lo = 0xA0;
+		} else if (b < 0xF5) {
+			len = 4;
+			if (b == 0xF0) lo = 0x90;
+			else if (b == 0xF4) hi = 0x8F;
+		} else
+			return -1;
+		for( int k=1; k<len; k++ ) {
+			int c = p+k < limit ? bytes.get(p+k) & 0xFF : -1;
+			if (c < lo || c > hi) return -k;
+			lo = 0x80;  hi = 0xBF;
+		}
+		if (b == 0xED && (bytes.get(p+1) & 0xFF) >= 0xA0)
+			return -3;	// a surrogate
+		return len;
+	}
+
+	// the byte offset of code point i, where 0 <= i <= size
+	private int offset( int i ) {
+		if (offsets == null) return i;
+		if (i == size) return limit;
+		if (i == index) return pos;
+		int p = offsets[i / STEP];
+		for( int k=i%STEP; k>0; k-- )
+			p += length(p);
+		return p;
+	}
+
+	@Override
+	public void consume() {
+		if (index >= size)
+			throw new IllegalStateException("cannot consume EOF");
+		pos += offsets == null ? 1 : length(pos);
+		index++;
+	}
+
+	@Override
+	public int LA( int i ) {
+		if (i == 0) return 0;  // undefined
+		int k = i > 0 ? index+i-1 : index+i;
+		if (k < 0 || k >= size) return IntStream.EOF;
+		if (offsets == null) return bytes.get(k);
+		if (i < 0) return decode(offset(k));
+		int p = pos;
+		for( ; i>1; i-- )
+			p += length(p);
+		return decode(p);
+	}
+
+	@Override
+	public String getText( Interval interval ) {
+		int a = Math.max(interval.a, 0);
+		int b = Math.min(interval.b, size-1);
+		if (b < a) return "";
+		int start = offset(a);
+		byte[] text = new byte[offset(b+1) - start];
+		bytes.get(start, text);
+		return new String(text, offsets == null ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+	}
+
+	// The hash, as by String.hashCode, of the text from code point a to b,
+	// and whether that text equals s; for Names, which uses them to find
+	// the name of a token without making a String
+	int hashText( int a, int b ) {
+		int h = 0;
+		for( int p=offset(a), end=offset(b+1); p<end; ) {
+			int c;
+			if (offsets == null)
+				c = bytes.get(p++);
+			else {
+				c = decode(p);
+				p += length(p);
+			}
+			if (c >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+				h = 31*h + Character.highSurrogate(c);
+				c = Character.lowSurrogate(c);
+			}
+			h = 31*h + c;
+		}
+		return h;
+	}
+
+	boolean textEquals( int a, int b, String s ) {
+		int k = 0, n = s.length();
+		for( int p=offset(a), end=offset(b+1); p<end; ) {
+			if (offsets == null) {
+				if (k == n || s.charAt(k++) != bytes.get(p++)) return false;
+				continue;
+			}
+			int c = decode(p);
+			p += length(p);
+			if (k == n || s.codePointAt(k) != c) return false;
+			k += Character.charCount(c);
+		}
+		return k == n;
+	}
+
+	@Override
+	public int mark() { return -1; }
+
+	@Override
+	public void release( int marker ) { }
+
+	@Override
+	public int index() { return index; }
+
+	@Override
+	public void seek( int i ) {
+		i = Math.max(0, Math.min(i, size));
+		pos = offset(i);
+		index = i;
+	}
+
+	@Override
+	public int size() { return size; }
+
+	@Override
+	public String getSourceName() {
+		return name == null || name.isEmpty() ? IntStream.UNKNOWN_SOURCE_NAME : name;
+	}
+
+	@Override
+	public String toString() {
+		return getText(Interval.of(0, size-1));
+	}
+}
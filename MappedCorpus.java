@@ -0,0 +1,97 @@
+// MappedCorpus.java
+//
+// Many source files concatenated into one corpus file, for checking a
+// large body of code in one batch. An index file, <corpus>.idx, has a
+// line for each source,
+//     <offset> <length> <name>
+// giving where its text is in the corpus and the name used in messages.
+//
+// The corpus is opened once; each source is mapped from it on its own
+// (see MappedCharStream) when it is checked, so the corpus may be larger
+// than one mapping (2 GB) or than the heap, and the pages of a source can
+// be dropped once it has been checked.
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+public class MappedCorpus implements Closeable {
+	final Path file;
+	final FileChannel channel;
+	final long[] offsets;
+	final int[] lengths;
+	final String[] names;
+
+	private MappedCorpus( Path file, FileChannel channel, long[] offsets, int[] lengths, String[] names ) {
+		this.file = file;
+		this.channel = channel;
+		this.offsets = offsets;
+		this.lengths = lengths;
+		this.names = names;
+	}
+
+	static Path indexFile( Path corpus ) {
+		return corpus.resolveSibling(corpus.getFileName() + ".idx");
+	}
+
+	// opens a corpus and reads its index
+	public static MappedCorpus open( Path corpus ) throws IOException {
+		List<String> lines = Files.readAllLines(indexFile(corpus), StandardCharsets.UTF_8);
+		int n = lines.size();
+		long[] offsets = new long[n];
+		int[] lengths = new int[n];
+		String[] names = new String[n];
+		FileChannel ch = FileChannel.open(corpus, StandardOpenOption.READ);
+		long size = ch.size();
+		try {
+			for( int i=0; i<n; i++ ) {
+				String[] f = lines.get(i).split(" ", 3);
+				if (f.length < 3)
+					throw new IOException(indexFile(corpus) + ":" + (i+1) + ": malformed index line");
+				offsets[i] = Long.parseLong(f[0]);
+				lengths[i] = Integer.parseInt(f[1]);
+				names[i] = f[2];
+				if (offsets[i] < 0 || lengths[i] < 0 || offsets[i] + lengths[i] > size)
+					throw new IOException(indexFile(corpus) + ":" + (i+1) + ": source is outside the corpus");
+			}
+		} catch(IOException | NumberFormatException e) {
+			ch.close();
+			throw e instanceof IOException ? (IOException)e
+				: new IOException(indexFile(corpus) + ": malformed index", e);
+		}
+		return new MappedCorpus(corpus, ch, offsets, lengths, names);
+	}
+
+	public int size() { return names.length; }
+
+	public String getName( int i ) { return names[i]; }
+
+	// maps source i; safe to call concurrently
+	public MappedCharStream map( int i ) throws IOException {
+		return new MappedCharStream(
+			channel.map(FileChannel.MapMode.READ_ONLY, offsets[i], lengths[i]), names[i]);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	// Writes the files into a corpus and its index; the files are named
+	// in the index as they are in the list
+	public static void write( Path corpus, List<Path> files ) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(corpus));
+			 PrintWriter index = new PrintWriter(Files.newBufferedWriter(indexFile(corpus), StandardCharsets.UTF_8))) {
+			long offset = 0;
+			for( Path f : files ) {
+				long length = Files.copy(f, out);
+				if (length > Integer.MAX_VALUE)
+					throw new IOException(f + " is too large");
+				index.println(offset + " " + length + " " + f);
+				offset += length;
+			}
+		}
+	}
+}
@@ -0,0 +1,115 @@
+// Names.java
+//
+// The identifier pool of a compilation. Each distinct name is kept once,
+// as one String which is shared by the symbols (Symbol.name) and the
+// scopes, and is given a small integer id, numbered from 0 in order of
+// first use. The ids are used as keys in the scope stack (see
+// ScopeStack).
+//
+// The name of an identifier token is found without making a String when
+// the token comes from a MappedCharStream: the text is hashed and
+// compared where it lies in the source, and a String is made only the
+// first time the name is seen. The token text in the parse tree is not
+// made at all unless it is asked for (see GooScanner).
+//
+// Each compilation has its own pool. It is thread safe: the function
+// bodies are checked in parallel (see SymTabVisitor2). Names are looked
+// up without locking; a name is added, and the table grown, while
+// holding the lock.
+
+import org.antlr.v4.runtime.*;
+
+public class Names {
+	private static final class Entry {
+		final String name;
+		final int hash;
+		final int id;
+
+		Entry( String name, int id ) {
+			this.name = name;
+			this.hash = name.hashCode();
+			this.id = id;
+		}
+	}
+
+	// open-addressing hash table; it is replaced, not changed, when it grows
+	private volatile Entry[] table = new Entry[256];
+	private int count = 0;	// guarded by this
+
+	// returns the id of name, giving it a new id if it has none yet
+	public int intern( String name ) {
+		Entry e = find(name);
+		return e != null ? e.id : add(name).id;
+	}
+
+	// returns the id of name, or -1 if name has never been interned
+	public int lookup( String name ) {
+		Entry e = find(name);
+		return e == null ? -1 : e.id;
+	}
+
+	// the pooled copy of name
+	public String name( String name ) {
+		Entry e = find(name);
+		return e != null ? e.name : add(name).name;
+	}
+
+	// the pooled copy of the text of tok
+	public String name( Token tok ) {
+		CharStream input = tok.getInputStream();
+		int a = tok.getStartIndex(), b = tok.getStopIndex();
+		if (!(input instanceof MappedCharStream) || a < 0 || b < a || b >= input.size())
+			return name(tok.getText());	// e.g. a token made by the error recovery
+		MappedCharStream source = (MappedCharStream)input;
+		int hash = source.hashText(a, b);
+		Entry[] t = table;
+		int mask = t.length-1;
+		for( int i=spread(hash)&mask; ; i=(i+1)&mask ) {
+			Entry e = t[i];
+			if (e == null) break;
+			if (e.hash == hash && source.textEquals(a, b, e.name))
+				return e.name;
+		}
+		return add(tok.getText()).name;
+	}
+
+	public synchronized int size() { return count; }
+
+	private Entry find( String name ) {
+		Entry[] t = table;
+		int hash = name.hashCode();
+		int mask = t.length-1;
+		for( int i=spread(hash)&mask; ; i=(i+1)&mask ) {
+			Entry e = t[i];
+			if (e == null || e.hash == hash && e.name.equals(name))
+				return e;
+		}
+	}
+
+	private synchronized Entry add( String name ) {
+		Entry e = find(name);	// it may have been added since it was looked for
+		if (e != null) return e;
+		Entry[] t = table;
+		if (2*(count+1) > t.length) {
+			t = new Entry[t.length*2];
+			for( Entry old : table )
+				if (old != null) insert(t, old);
+		}
+		e = new Entry(name, count++);
+		insert(t, e);
+		table = t;
+		return e;
+	}
+
+	private static void insert( Entry[] t, Entry e ) {
+		int mask = t.length-1;
+		int i = spread(e.hash) & mask;
+		while( t[i] != null )
+			i = (i+1) & mask;
+		t[i] = e;
+	}
+
+	private static int spread( int hash ) {
+		return hash ^ (hash >>> 16);
+	}
+}
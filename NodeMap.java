@@ -0,0 +1,79 @@
+// NodeMap.java
+//
+// Associates values with the nodes of a parse tree. It does the same job
+// as ANTLR's ParseTreeProperty, but the values are held in an array
+// indexed by the node id (see GooContext) rather than in an
+// IdentityHashMap. A node without an id falls back to a ParseTreeProperty.
+//
+// A map made for a known number of nodes never grows, so threads may put
+// values for different nodes into it at the same time (see
+// SymTabVisitor2.checkBodies). A map made without a size grows as needed
+// and must only be used by one thread.
+
+import org.antlr.v4.runtime.tree.*;
+import java.util.Arrays;
+
+public class NodeMap<V> {
+	private Object[] values;
+	private ParseTreeProperty<V> unnumbered;
+	private final boolean fixed;	// true => values is never replaced
+
+	public NodeMap() {
+		values = new Object[1024];
+		fixed = false;
+	}
+
+	// size is the number of nodes; every node id must be less than size
+	public NodeMap( int size ) {
+		values = new Object[Math.max(size, 16)];
+		fixed = true;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get( ParseTree node ) {
+		int id = id(node);
+		if (id < 0)
+			return getUnnumbered(node);
+		return id < values.length ? (V)values[id] : null;
+	}
+
+	public void put( ParseTree node, V value ) {
+		int id = id(node);
+		if (id < 0) {
+			putUnnumbered(node, value);
+			return;
+		}
+		if (id >= values.length) {
+			if (fixed)
+				throw new IllegalStateException("node id " + id + " out of range for " + values.length + " nodes");
+			values = Arrays.copyOf(values, Math.max(id+1, values.length*2));
+		}
+		values[id] = value;
+	}
+
+	public V removeFrom( ParseTree node ) {
+		V old = get(node);
+		int id = id(node);
+		if (id < 0) {
+			synchronized(this) {
+				if (unnumbered != null) unnumbered.removeFrom(node);
+			}
+		} else if (id < values.length)
+			values[id] = null;
+		return old;
+	}
+
+	// the nodes without ids are rare, so they are simply locked
+	private synchronized V getUnnumbered( ParseTree node ) {
+		return unnumbered == null ? null : unnumbered.get(node);
+	}
+
+	private synchronized void putUnnumbered( ParseTree node, V value ) {
+		if (unnumbered == null) unnumbered = new ParseTreeProperty<V>();
+		unnumbered.put(node, value);
+	}
+
+	private static int id( ParseTree node ) {
+		return node instanceof GooContext ? ((GooContext)node).nodeId : -1;
+	}
+}
@@ -0,0 +1,93 @@
+// Operator.java
+//
+// The operator symbols of Goo expressions. Several symbols are used both
+// as a binary and as a unary operator (e.g. '-' and '^'); which one is
+// meant depends on where the symbol appears.
+//
+//   binary_op  = "||" | "&&" | rel_op | add_op | mul_op .
+//   rel_op     = "==" | "!=" | "<" | "<=" | ">" | ">=" .
+//   add_op     = "+" | "-" | "|" | "^" .
+//   mul_op     = "*" | "/" | "%" | "<<" | ">>" | "&" | "&^" .
+//   unary_op   = "+" | "-" | "!" | "^" | "*" | "&" .
+
+public enum Operator {
+	ADD("+"), SUB("-"), OR("|"), XOR("^"),
+	MUL("*"), DIV("/"), REM("%"), SHL("<<"), SHR(">>"), AND("&"), AND_NOT("&^"),
+	EQ("=="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">="),
+	LAND("&&"), LOR("||"), NOT("!");
+
+	private final String text;
+
+	// the operators indexed by the token types of the parser; the same
+	// token type is used for an operator symbol wherever it appears
+	private static final Operator[] byToken =
+		new Operator[GooParser.VOCABULARY.getMaxTokenType()+1];
+
+	static {
+		for( int t=0; t<byToken.length; t++ ) {
+			String lit = GooParser.VOCABULARY.getLiteralName(t);  // e.g. "'+'"
+			if (lit != null)
+				byToken[t] = fromText(lit.substring(1, lit.length()-1));
+		}
+	}
+
+	Operator( String text ) { this.text = text; }
+
+	public String getText() { return text; }
+
+	@Override
+	public String toString() { return text; }
+
+	// the precedence of a binary operator, from 5 (mul_op) down to 1 (||)
+	public int precedence() {
+		switch(this) {
+			case MUL: case DIV: case REM: case SHL: case SHR: case AND: case AND_NOT:
+				return 5;
+			case ADD: case SUB: case OR: case XOR:
+				return 4;
+			case LAND:
+				return 2;
+			case LOR:
+				return 1;
+			default:
+				return isRelational() ? 3 : 0;
+		}
+	}
+
+	public boolean isRelational() {
+		return this == EQ || this == NE || this == LT || this == LE || this == GT || this == GE;
+	}
+
+	// returns null if the token type is not an operator symbol
+	public static Operator forToken( int tokenType ) {
+		if (tokenType < 0 || tokenType >= byToken.length) return null;
+		return byToken[tokenType];
+	}
+
+	// returns null if s is not an operator symbol
+	public static Operator fromText( String s ) {
+		switch(s) {
+			case "+":  return ADD;
+			case "-":  return SUB;
+			case "|":  return OR;
+			case "^":  return XOR;
+			case "*":  return MUL;
+			case "/":  return DIV;
+			case "%":  return REM;
+			case "<<": return SHL;
+			case ">>": return SHR;
+			case "&":  return AND;
+			case "&^": return AND_NOT;
+			case "==": return EQ;
+			case "!=": return NE;
+			case "<":  return LT;
+			case "<=": return LE;
+			case ">":  return GT;
+			case ">=": return GE;
+			case "&&": return LAND;
+			case "||": return LOR;
+			case "!":  return NOT;
+			default:   return null;
+		}
+	}
+}
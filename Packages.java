@@ -8,38 +8,44 @@ import java.util.*;
 
 public class Packages {
     // An import declaration uses a file name, this table tells us the
-    // name of the package in that file.
-    static Map<String,String> fileToPackage = new HashMap<String,String>() {{
-    	put("lib/math","math"); put("fmt", "fmt");
-    }};
-	static Packages INSTANCE = new Packages();
+    // name of the package in that file. (It is never modified.)
+    static final Map<String,String> fileToPackage;
+    static {
+    	Map<String,String> m = new HashMap<String,String>();
+    	m.put("lib/math","math"); m.put("fmt", "fmt");
+    	fileToPackage = Collections.unmodifiableMap(m);
+    }
 
 	private Packages() { }
 
-    static void handleImport( String filename, Scope scope, ParserRuleContext obj ) {
+    static void handleImport( Compilation comp, String filename, Scope scope, ParserRuleContext obj ) {
     	String pkgName = fileToPackage.get(filename);
     	if (pkgName == null) {
-    		ReportError.error(obj, "unknown/unsupported package: "+filename);
+    		comp.errors.error(obj, Diagnostic.Id.UNKNOWN_PACKAGE, filename);
+    		return;
+    	}
+    	PackageSymbol pkg = new PackageSymbol(pkgName);
+    	if (!scope.define(pkg)) {
+    		comp.errors.error(obj, Diagnostic.Id.PACKAGE_IMPORTED_TWICE, pkgName);
     		return;
     	}
-    	PackageSymbol pkg = INSTANCE.new PackageSymbol(pkgName);
-    	scope.define(pkg);
+    	Predefined predef = comp.predefined;
     	if (pkgName.equals("fmt")) {
     		LinkedList<Type> parms = new LinkedList<Type>();
     		LinkedList<Type> results = new LinkedList<Type>();
     		parms.add(Type.variadicAnyType);
-    		results.add(Predefined.intType);  results.add(Predefined.stringType);
-    		Type sig = Type.newFunctionSignature(parms,results);
+    		results.add(predef.intType);  results.add(predef.stringType);
+    		Type sig = comp.types.newFunctionSignature(parms,results);
     		pkg.addMember(new Symbol("Println",Symbol.Kind.Function,sig,scope));
     		pkg.addMember(new Symbol("Print",Symbol.Kind.Function,sig,scope));
     		parms.clear();
-    		parms.add(Predefined.stringType); parms.add(Type.variadicAnyType);
-    		sig = Type.newFunctionSignature(parms,results);
+    		parms.add(predef.stringType); parms.add(Type.variadicAnyType);
+    		sig = comp.types.newFunctionSignature(parms,results);
     		pkg.addMember(new Symbol("Printf",Symbol.Kind.Function,sig,scope));
     	}
     }
 
-	public class PackageSymbol extends Symbol {
+	public static class PackageSymbol extends Symbol {
 		Map<String, Symbol> members = new HashMap<String, Symbol>();
 
 		public PackageSymbol(String name) {
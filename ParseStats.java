@@ -0,0 +1,38 @@
+// ParseStats.java
+//
+// Counts how the two-stage parse (see GooMain.parseSourceFile) went: how
+// many files were parsed by the fast SLL stage alone, and how many had to
+// be parsed again with full LL prediction, with the time spent in each
+// stage. One instance is shared by all the parses in the JVM, so the
+// counters are atomic.
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ParseStats {
+	final AtomicLong sllParses = new AtomicLong();	// parses done by SLL alone
+	final AtomicLong llParses = new AtomicLong();	// fallbacks to full LL
+	final AtomicLong sllNanos = new AtomicLong();	// time in SLL, including failed attempts
+	final AtomicLong llNanos = new AtomicLong();
+
+	public void recordSll( long nanos ) {
+		sllParses.incrementAndGet();
+		sllNanos.addAndGet(nanos);
+	}
+
+	// sllNanos is the time of the failed SLL attempt
+	public void recordFallback( long sllNanos, long llNanos ) {
+		llParses.incrementAndGet();
+		this.sllNanos.addAndGet(sllNanos);
+		this.llNanos.addAndGet(llNanos);
+	}
+
+	public long getParses() { return sllParses.get() + llParses.get(); }
+	public long getFallbacks() { return llParses.get(); }
+
+	@Override
+	public String toString() {
+		long n = getParses(), fb = getFallbacks();
+		return String.format("parses: %d, LL fallbacks: %d (%.1f%%), SLL time: %.1f ms, LL time: %.1f ms",
+			n, fb, n == 0 ? 0.0 : 100.0*fb/n, sllNanos.get()/1e6, llNanos.get()/1e6);
+	}
+}
@@ -1,31 +1,59 @@
 // Predefined.java
 //
 // Adds definitions for predefined symbols to the global scope
+//
+// An instance holds the scope of predefined names together with the
+// predefined types. Once built it is never modified, so one instance can
+// be shared by all compilations in the JVM (see getUniverse).
 
 public class Predefined {
 	// these three predefined types must sometimes be accessed without going
 	// via symbol table lookup (when library packages are imported)
-	public static Type intType;
-	public static Type stringType;
-	public static Type boolType;
-	public static Type floatType;  // float64 type
-	public static Type runeType;
+	public Type intType;
+	public Type stringType;
+	public Type boolType;
+	public Type floatType;  // float64 type
+	public Type runeType;
+
+	final BlockScope globals;
+	final TypeTable types = new TypeTable(null);
+	final UntypedConstants constants = new UntypedConstants();  // thread safe
+
+	// the instance shared by every compilation run in this JVM
+	private static Predefined universe;
+
+	public Predefined() {
+		globals = new BlockScope(null);
+		globals.setScopeName("predefined names");
+		types.intern((Type.Pointer)Type.nilType);
+		addPredefinedNames(globals);
+	}
+
+	// Returns the shared instance, creating it on first use
+	public static synchronized Predefined getUniverse() {
+		if (universe == null)
+			universe = new Predefined();
+		return universe;
+	}
+
+	public BlockScope getScope() { return globals; }
 
-	private static void addTypeName( Type t, Scope globals ) {
+	private void addTypeName( Type t, Scope globals ) {
 		addTypeName(t.getName(), t, globals);
 	}
 
-	private static void addTypeName( String name, Type t, Scope globals ) {
+	private void addTypeName( String name, Type t, Scope globals ) {
+		t.setPredeclared(true);
 		Symbol sy = new Symbol(name, Symbol.Kind.TypeName, t, globals);
 		globals.define(sy);
 	}
 
-    private static void addFuncName( String name, Type sig, Scope globals) {
+    private void addFuncName( String name, Type sig, Scope globals) {
         Symbol sy = new Symbol(name, Symbol.Kind.Function, sig, globals);
 		globals.define(sy);
     }
 
-    private static void addTypeNames(Scope globals) {
+    private void addTypeNames(Scope globals) {
 		Type t = Type.newNumericType('i',32);
 		addTypeName(t, globals);
 		addTypeName("rune", t, globals);  // rune is a synonym for int32
@@ -50,28 +78,28 @@ public class Predefined {
 		boolType = Type.boolType;
     }
 
-    private static Type newSig( Type formal1, Type result ) {
+    private Type newSig( Type formal1, Type result ) {
         Type[] formals = new Type[1];
         formals[0] = formal1;
         if (result==null)
-            return Type.newFunctionSignature(formals);
+            return types.newFunctionSignature(formals);
         else
-            return Type.newFunctionSignature(formals, result);
+            return types.newFunctionSignature(formals, result);
     }
 
-    private static Type newSig( Type formal1, Type formal2, Type result ) {
+    private Type newSig( Type formal1, Type formal2, Type result ) {
         Type[] formals = new Type[2];
         formals[0] = formal1; formals[1] = formal2;
         if (result==null)
-            return Type.newFunctionSignature(formals);
+            return types.newFunctionSignature(formals);
         else
-            return Type.newFunctionSignature(formals, result);
+            return types.newFunctionSignature(formals, result);
     }
 
-    private static void addFunctionNames(Scope globals) {
+    private void addFunctionNames(Scope globals) {
 		Type sig;
-		Type st = Type.newSliceType(Type.anyType); // slice with any element type
-		Type pt = Type.newPointerType(Type.anyType); // pointer to any type
+		Type st = types.newSliceType(Type.anyType); // slice with any element type
+		Type pt = types.newPointerType(Type.anyType); // pointer to any type
 		sig = newSig(Type.apsType, intType);
 		addFuncName("cap", sig, globals);
 		sig = newSig(st, st, intType);
@@ -90,15 +118,17 @@ public class Predefined {
 		globals.define(nil);
     }
 
-	public static void AddPredefinedNames( Scope globals ) {
+	private void addPredefinedNames( Scope globals ) {
         addTypeNames(globals);  // this call must be first
         addFunctionNames(globals);
         Symbol tr = new Symbol("true", Symbol.Kind.Constant, boolType, globals);
+        tr.setConstValue(Constant.TRUE);
         globals.define(tr);
         Symbol fl = new Symbol("false", Symbol.Kind.Constant, boolType, globals);
+        fl.setConstValue(Constant.FALSE);
         globals.define(fl);
         Symbol nil = new Symbol("nil", Symbol.Kind.Constant, Type.nilType, globals);
 	}
 
 
-}
\ No newline at end of file
+}
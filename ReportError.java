@@ -1,61 +1,276 @@
 // ReportError.java
 //
 // Handles display of warning and error messages
+//
+// Each compilation has its own instance (see Compilation.java), so the
+// counts and the output of one compilation are kept apart from others.
+//
+// The messages are kept as Diagnostic objects and are only formatted and
+// printed when flush is called, all at once. They can be printed as text
+// (the default), as JSON Lines (one JSON object per message) or as a
+// SARIF log; a SARIF log has to hold all the messages, so it is written
+// separately by writeSarif. A message about an operand of unknown type is
+// dropped, since the error which made the type unknown has already been
+// reported. If there is an error limit, the errors after the limit are
+// counted but not printed.
 
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.tree.*;
+import java.io.PrintStream;
+import java.util.*;
 
 public class ReportError {
-    private static int errorCount = 0;
-    private static int warningCount = 0;
+	enum Format { Text, JsonLines, Sarif }
+
+    private int errorCount = 0;
+    private int warningCount = 0;
+    private int suppressedCount = 0;	// cascading errors dropped
+    private int droppedCount = 0;	// errors over the limit
+    private final PrintStream out;
+    private String fileName = null;
+    private Format format = Format.Text;
+    private int errorLimit = 0;		// 0 means no limit
+    private final ArrayList<Diagnostic> pending = new ArrayList<Diagnostic>();  // not yet flushed
+    private final ArrayList<Diagnostic> flushed = new ArrayList<Diagnostic>();  // kept for SARIF
+
+    public ReportError( PrintStream out ) {
+        this.out = out;
+    }
+
+    public ReportError() {
+        this(System.out);
+    }
+
+    // An instance with the same settings as r, whose messages are
+    // later added to r (see addAll)
+    public ReportError( PrintStream out, ReportError r ) {
+        this(out);
+        fileName = r.fileName;
+        format = r.format;
+        errorLimit = r.errorLimit;
+    }
+
+    public void setFileName( String name ) { fileName = name; }
+    public String getFileName() { return fileName; }
+    public void setFormat( Format f ) { format = f; }
+    public Format getFormat() { return format; }
+    public void setErrorLimit( int n ) { errorLimit = n; }
 
 	// The first argument provides a reference to a parse tree
 	// context from which line & column numbers are obtained.
-    public static void error( ParserRuleContext ctx, String msg ) {
-		printLocation(ctx);
-        error(msg);
+    public void error( ParserRuleContext ctx, Diagnostic.Id id, Object... args ) {
+    	report(Diagnostic.Severity.Error, ctx, id, args);
+    }
+
+    public void error( int line, int col, Diagnostic.Id id, Object... args ) {
+    	report(new Diagnostic(Diagnostic.Severity.Error, fileName, line, col, id, args));
+    }
+
+    public void error( Diagnostic.Id id, Object... args ) {
+    	error(0, 0, id, args);
     }
 
-    public static void error( int line, int col, String msg ) {
-		printLocation(line, col);
-        error(msg);
+    public void error( ParserRuleContext ctx, String msg ) {
+        error(ctx, Diagnostic.Id.MESSAGE, msg);
     }
 
-    public static void error( String msg ) {
-        System.out.println(msg);
-        errorCount++;
+    public void error( String msg ) {
+        error(Diagnostic.Id.MESSAGE, msg);
     }
 
 	// The first argument provides a reference to a parse tree
 	// context from which line & column numbers are obtained.
-    public static void warning( ParserRuleContext ctx, String msg ) {
-		printLocation(ctx);
-        warning(msg);
+    public void warning( ParserRuleContext ctx, Diagnostic.Id id, Object... args ) {
+    	report(Diagnostic.Severity.Warning, ctx, id, args);
+    }
+
+    public void warning( ParserRuleContext ctx, String msg ) {
+        warning(ctx, Diagnostic.Id.MESSAGE, msg);
     }
 
-    public static void warning( String msg ) {
-        System.out.println(msg);
-        warningCount++;
+    public void warning( String msg ) {
+        warning(null, Diagnostic.Id.MESSAGE, msg);
     }
 
-	private static void printLocation( ParserRuleContext ctx ) {
-    	if (ctx == null)
-    		return;
+	private void report( Diagnostic.Severity sev, ParserRuleContext ctx, Diagnostic.Id id, Object[] args ) {
     	// we have a choice of start or stop here (the beginning of the text
     	// for the syntactic construct or the end of the text) ... the
     	// beginning may not always be the most appropriate position.
-    	CommonToken pos = (CommonToken)(ctx.start);
-		printLocation(pos.getLine(), pos.getCharPositionInLine());
+		int line = 0, col = 0;
+		if (ctx != null) {
+			line = ctx.start.getLine();
+			col = ctx.start.getCharPositionInLine();
+		}
+		report(new Diagnostic(sev, fileName, line, col, id, args));
+	}
+
+	private void report( Diagnostic d ) {
+		if (d.isCascade()) {
+			suppressedCount++;
+			return;
+		}
+		keep(d);
+	}
+
+	// counts d and keeps it unless it is over the error limit
+	private void keep( Diagnostic d ) {
+		if (!d.isError()) {
+			warningCount++;
+			pending.add(d);
+			return;
+		}
+		errorCount++;
+		if (errorLimit > 0 && errorCount > errorLimit) {
+			dropped(1);
+			return;
+		}
+		pending.add(d);
+	}
+
+	private void dropped( int n ) {
+		if (droppedCount == 0 && n > 0)
+			pending.add(new Diagnostic(Diagnostic.Severity.Error, fileName, 0, 0,
+				Diagnostic.Id.TOO_MANY_ERRORS, new Object[0]));
+		droppedCount += n;
 	}
 
-	private static void printLocation( int line, int col ) {
-		System.out.print("line " + line + ":");
-		if (col > 0)
-			System.out.print(col + " ");
+	// Adds the messages of r, as if they had been reported here. The
+	// messages r has flushed are only counted: they are already in the
+	// output of r, which the caller has to copy.
+	public void addAll( ReportError r ) {
+		if (!r.flushed.isEmpty()) {
+			flush();
+			for( Diagnostic d : r.flushed ) {
+				if (d.id == Diagnostic.Id.TOO_MANY_ERRORS) continue;
+				if (d.isError()) errorCount++; else warningCount++;
+				flushed.add(d);
+			}
+		}
+		for( Diagnostic d : r.pending )
+			if (d.id != Diagnostic.Id.TOO_MANY_ERRORS) keep(d);
+		if (r.droppedCount > 0) {
+			errorCount += r.droppedCount;
+			dropped(r.droppedCount);
+		}
+		suppressedCount += r.suppressedCount;
 	}
 
-    public static int getErrorCount() { return errorCount; }
+	// Prints the messages reported since the last flush (in a SARIF log
+	// they are printed by writeSarif)
+	public void flush() {
+		if (pending.isEmpty()) return;
+		if (format != Format.Sarif) {
+			StringBuilder sb = new StringBuilder(pending.size()*64);
+			for( Diagnostic d : pending ) {
+				if (format == Format.JsonLines)
+					appendJson(sb, d);
+				else
+					appendText(sb, d);
+				sb.append('\n');
+			}
+			out.print(sb);
+		}
+		flushed.addAll(pending);
+		pending.clear();
+	}
+
+	// the messages which have been flushed
+	public List<Diagnostic> getDiagnostics() { return flushed; }
+
+	private static void appendText( StringBuilder sb, Diagnostic d ) {
+		if (d.line > 0) {
+			sb.append("line ").append(d.line).append(':');
+			if (d.col > 0)
+				sb.append(d.col).append(' ');
+		}
+		sb.append(d.getMessage());
+	}
+
+	private static void appendJson( StringBuilder sb, Diagnostic d ) {
+		sb.append("{\"severity\":\"").append(d.isError() ? "error" : "warning").append('"');
+		if (d.file != null) {
+			sb.append(",\"file\":");
+			appendString(sb, d.file);
+		}
+		sb.append(",\"line\":").append(d.line);
+		sb.append(",\"column\":").append(d.col);
+		sb.append(",\"id\":\"").append(d.id).append('"');
+		sb.append(",\"message\":");
+		appendString(sb, d.getMessage());
+		sb.append('}');
+	}
+
+	// Writes one SARIF 2.1.0 log holding the flushed messages of all
+	// the compilations in reports
+	public static void writeSarif( PrintStream out, List<ReportError> reports ) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"version\":\"2.1.0\",");
+		sb.append("\"$schema\":\"https://json.schemastore.org/sarif-2.1.0.json\",");
+		sb.append("\"runs\":[{\"tool\":{\"driver\":{\"name\":\"goo\",\"rules\":[");
+		Diagnostic.Id[] ids = Diagnostic.Id.values();
+		for( int i=0; i<ids.length; i++ ) {
+			if (i > 0) sb.append(',');
+			sb.append("{\"id\":\"").append(ids[i]).append("\",\"shortDescription\":{\"text\":");
+			appendString(sb, ids[i].template);
+			sb.append("}}");
+		}
+		sb.append("]}},\"results\":[");
+		boolean first = true;
+		for( ReportError r : reports ) {
+			r.flush();
+			for( Diagnostic d : r.flushed ) {
+				if (!first) sb.append(',');
+				first = false;
+				sb.append("\n{\"ruleId\":\"").append(d.id).append("\",\"ruleIndex\":").append(d.id.ordinal());
+				sb.append(",\"level\":\"").append(d.isError() ? "error" : "warning").append('"');
+				sb.append(",\"message\":{\"text\":");
+				appendString(sb, d.getMessage());
+				sb.append('}');
+				if (d.file != null) {
+					sb.append(",\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uri\":");
+					appendString(sb, d.file);
+					sb.append('}');
+					if (d.line > 0) {
+						sb.append(",\"region\":{\"startLine\":").append(d.line);
+						if (d.col > 0)
+							sb.append(",\"startColumn\":").append(d.col+1);  // SARIF columns start at 1
+						sb.append('}');
+					}
+					sb.append("}}]");
+				}
+				sb.append('}');
+			}
+		}
+		sb.append("]}]}");
+		out.println(sb);
+		out.flush();
+	}
+
+	// appends s as a JSON string
+	private static void appendString( StringBuilder sb, String s ) {
+		sb.append('"');
+		for( int i=0; i<s.length(); i++ ) {
+			char c = s.charAt(i);
+			switch(c) {
+				case '"':  sb.append("\\\""); break;
+				case '\\': sb.append("\\\\"); break;
+				case '\n': sb.append("\\n"); break;
+				case '\r': sb.append("\\r"); break;
+				case '\t': sb.append("\\t"); break;
+				default:
+					if (c < 0x20)
+						sb.append(String.format("\\u%04x", (int)c));
+					else
+						sb.append(c);
+			}
+		}
+		sb.append('"');
+	}
+
+    public int getErrorCount() { return errorCount; }
+
+    public int getWarningCount() { return warningCount; }
 
-    public static int getWarningCount() { return warningCount; }
+    public int getSuppressedCount() { return suppressedCount; }
 
-}
\ No newline at end of file
+}
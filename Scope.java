@@ -2,6 +2,8 @@
 //
 // Methods for one scope level in a tree-structured symbol table
 //
+import java.io.PrintStream;
+
 public interface Scope {
     public String getScopeName();
     public void setScopeName(String name);
@@ -9,8 +11,9 @@ public interface Scope {
     /** Where to look next for symbols */
     public Scope getEnclosingScope();
 
-    /** Define a symbol in the current scope */
-    public void define(Symbol sym);
+    /** Define a symbol in the current scope;
+        returns false if the name is already defined in this scope */
+    public boolean define(Symbol sym);
 
     /** Look up name in this scope or in enclosing scope if not here */
     public Symbol resolve(String name);
@@ -19,5 +22,5 @@ public interface Scope {
     public Symbol resolveInCurrent(String name);
 
     /** Display the variables and types of all names in the scope */
-    public void dumpScope();
+    public void dumpScope(PrintStream out);
 }
@@ -0,0 +1,190 @@
+// ScopeStack.java
+//
+// The symbol table for the blocks of a function body.
+//
+// Instead of one BlockScope with its own map per block, all the names
+// declared in the blocks being visited are kept on a single stack. Names
+// are interned to ints (see Names) and an open-addressing hash table maps
+// each name id to the innermost binding of that name on the stack. Each
+// binding remembers the binding which it hides, so leaving a block just
+// unwinds that block's part of the stack: entering and leaving a block
+// take constant time, apart from restoring the hidden bindings.
+//
+// One instance is used as the Scope for every block in a function; its
+// enclosing scope is the FunctionSymbol, which (like Type.Struct) is
+// still an ordinary Scope. A name not bound on the stack is looked up in
+// the enclosing scope. Symbols defined here have this instance as their
+// scope.
+//
+// Each symbol defined here is given its block nesting level (1 for the
+// function body) as its depth, and a slot in the function's frame. The
+// slot is the symbol's position on the stack, after the formal
+// parameters; blocks which are not nested share slots.
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+public class ScopeStack implements Scope {
+	private final Names names;
+	private Scope enclosingScope;	// scope outside the outermost block
+	private String scopeName = "scope block";
+
+	// the bindings, in order of definition
+	private Symbol[] syms = new Symbol[64];
+	private int[] ids = new int[64];	// id of the name
+	private int[] hidden = new int[64];	// index of binding hidden by this one, or -1
+	private int top = 0;
+
+	// index in syms of the first binding of each block level
+	private int[] levels = new int[16];
+	private int depth = 0;
+
+	private int base = 0;		// slots used by the formal parameters
+	private int frameSize = 0;	// slots used so far, including the formals
+
+	// open-addressing hash table: name id -> index in syms of innermost binding.
+	// Keys are never removed; a name with no binding has the value -1.
+	private int[] keys = new int[64];
+	private int[] bindings = new int[64];
+	private int count = 0;
+
+	public ScopeStack( Names names, Scope enclosingScope ) {
+		this.names = names;
+		this.enclosingScope = enclosingScope;
+		Arrays.fill(keys, -1);
+	}
+
+	// the enclosing scope may only be changed when no block is open
+	// and numbering of the slots starts again
+	public void setEnclosingScope( Scope s ) {
+		assert depth == 0;
+		enclosingScope = s;
+		base = s instanceof FunctionSymbol ? ((FunctionSymbol)s).getParameterCount() : 0;
+		frameSize = base;
+	}
+
+	// the number of slots needed for the function visited so far
+	public int getFrameSize() { return frameSize; }
+
+	public int getDepth() { return depth; }
+
+	// enter a block
+	public void push() {
+		if (depth == levels.length)
+			levels = Arrays.copyOf(levels, depth*2);
+		levels[depth++] = top;
+	}
+
+	// leave the innermost block, discarding its names
+	public void pop() {
+		int start = levels[--depth];
+		for( int i=top-1; i>=start; i-- ) {
+			bindings[slot(ids[i])] = hidden[i];
+			syms[i] = null;
+		}
+		top = start;
+	}
+
+	// *************** Scope methods *******************
+
+	public String getScopeName() { return scopeName; }
+	public void setScopeName(String name) { scopeName = name; }
+
+	public Scope getEnclosingScope() { return enclosingScope; }
+
+	// defines sym in the innermost block
+	public boolean define(Symbol sym) {
+		int id = names.intern(sym.name);
+		int s = slot(id);
+		int b = bindings[s];
+		if (b >= levels[depth-1])
+			return false;  // already declared in this block
+		if (top == syms.length) {
+			syms = Arrays.copyOf(syms, top*2);
+			ids = Arrays.copyOf(ids, top*2);
+			hidden = Arrays.copyOf(hidden, top*2);
+		}
+		syms[top] = sym;
+		ids[top] = id;
+		hidden[top] = b;
+		bindings[s] = top++;
+		sym.scope = this; // track the scope in each symbol
+		sym.setDepth(depth);
+		sym.setSlot(base + top - 1);
+		if (base + top > frameSize) frameSize = base + top;
+		return true;
+	}
+
+	public Symbol resolve(String name) {
+		int b = binding(name);
+		if (b >= 0) return syms[b];
+		return enclosingScope == null ? null : enclosingScope.resolve(name);
+	}
+
+	// looks up name in the innermost block only
+	public Symbol resolveInCurrent(String name) {
+		int b = binding(name);
+		return b >= levels[depth-1] ? syms[b] : null;
+	}
+
+	// displays the names declared in the innermost block
+	public void dumpScope(PrintStream out) {
+		int start = levels[depth-1];
+		if (top > start) {
+			out.println(scopeName + " {");
+			for( int i=start; i<top; i++ )
+				out.println("   "+syms[i].getLineNumber()+": "+syms[i].toString());
+			out.println("}\n");
+		}
+	}
+
+	// *************** the hash table *******************
+
+	// index of innermost binding of name, or -1
+	private int binding( String name ) {
+		int id = names.lookup(name);
+		if (id < 0) return -1;
+		int mask = keys.length-1;
+		for( int i=hash(id)&mask; ; i=(i+1)&mask ) {
+			if (keys[i] == id) return bindings[i];
+			if (keys[i] < 0) return -1;
+		}
+	}
+
+	// slot for name id, entering it in the table if not already present
+	private int slot( int id ) {
+		int mask = keys.length-1;
+		int i = hash(id) & mask;
+		while( keys[i] >= 0 ) {
+			if (keys[i] == id) return i;
+			i = (i+1) & mask;
+		}
+		if (2*(count+1) > keys.length) {
+			grow();
+			return slot(id);
+		}
+		keys[i] = id;
+		bindings[i] = -1;
+		count++;
+		return i;
+	}
+
+	private void grow() {
+		int[] oldKeys = keys, oldBindings = bindings;
+		keys = new int[oldKeys.length*2];
+		bindings = new int[oldKeys.length*2];
+		Arrays.fill(keys, -1);
+		int mask = keys.length-1;
+		for( int j=0; j<oldKeys.length; j++ ) {
+			if (oldKeys[j] < 0) continue;
+			int i = hash(oldKeys[j]) & mask;
+			while( keys[i] >= 0 ) i = (i+1) & mask;
+			keys[i] = oldKeys[j];
+			bindings[i] = oldBindings[j];
+		}
+	}
+
+	private static int hash( int id ) {
+		return id * 0x9E3779B9;
+	}
+}
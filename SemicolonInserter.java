@@ -0,0 +1,108 @@
+// SemicolonInserter.java
+//
+// A token source which goes between the lexer and the parser and inserts
+// the semicolons that a Go program may leave out at the ends of lines. As
+// in the Go specification, a ';' is inserted when a line (or the input)
+// ends with an identifier, a literal, one of the keywords break, continue
+// or return, or one of ++ -- ) ] }. The other optional semicolon, before
+// a closing ')' or '}', is optional in the grammar itself (see Goo.g4).
+//
+// A line end is found by comparing the line numbers of two consecutive
+// tokens, so it does not matter whether the lexer skips the newlines or
+// sends them on a hidden channel. A program which already has all its
+// semicolons gets no more.
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.Pair;
+
+public class SemicolonInserter implements TokenSource {
+	static final int SEMI = tokenType("';'");
+	static final int STRING = tokenType("StringLit");
+	// endsLine[t] is true if a ';' is inserted after a token of type t at the end of a line
+	static final boolean[] endsLine = new boolean[GooParser.VOCABULARY.getMaxTokenType()+1];
+	static {
+		String[] names = { "Identifier", "IntLit", "FloatLit", "RuneLit", "StringLit",
+			"BREAK", "CONTINUE", "RETURN", "'++'", "'--'", "')'", "']'", "'}'" };
+		for( String name : names ) {
+			int t = tokenType(name);
+			if (t > 0) endsLine[t] = true;
+		}
+	}
+
+	final TokenSource source;
+	final Pair<TokenSource,CharStream> sourcePair;
+	Token last;		// the last token on the default channel
+	int lastLine;	// the line on which the last token ends
+	Token pending;	// the token which follows an inserted ';'
+
+	public SemicolonInserter( TokenSource source ) {
+		this.source = source;
+		this.sourcePair = new Pair<>(source, source.getInputStream());
+	}
+
+	@Override
+	public Token nextToken() {
+		Token t = pending;
+		if (t != null)
+			pending = null;
+		else
+			t = source.nextToken();
+		if (t.getChannel() != Token.DEFAULT_CHANNEL)
+			return t;
+		if (last != null && endsLine[last.getType()]
+				&& (t.getType() == Token.EOF || t.getLine() > lastLine)) {
+			pending = t;
+			t = semicolonAfter(last);
+		}
+		last = t;
+		lastLine = t.getLine();
+		if (t.getType() == STRING)	// a raw string may span several lines
+			lastLine += newlines(t.getText());
+		return t;
+	}
+
+	// an empty token just after tok, with the text ";"
+	private Token semicolonAfter( Token tok ) {
+		int stop = tok.getStopIndex();
+		CommonToken semi = new CommonToken(sourcePair, SEMI, Token.DEFAULT_CHANNEL, stop+1, stop);
+		semi.setText(";");
+		semi.setLine(lastLine);
+		if (lastLine == tok.getLine())
+			semi.setCharPositionInLine(tok.getCharPositionInLine() + stop - tok.getStartIndex() + 1);
+		return semi;
+	}
+
+	private static int newlines( String s ) {
+		int n = 0;
+		for( int i=s.indexOf('\n'); i >= 0; i=s.indexOf('\n', i+1) )
+			n++;
+		return n;
+	}
+
+	// the token type with the given symbolic name, or literal name such as "';'"
+	private static int tokenType( String name ) {
+		Vocabulary v = GooParser.VOCABULARY;
+		for( int t=0; t<=v.getMaxTokenType(); t++ )
+			if (name.equals(v.getSymbolicName(t)) || name.equals(v.getLiteralName(t)))
+				return t;
+		return -1;
+	}
+
+	@Override
+	public int getLine() { return source.getLine(); }
+
+	@Override
+	public int getCharPositionInLine() { return source.getCharPositionInLine(); }
+
+	@Override
+	public CharStream getInputStream() { return source.getInputStream(); }
+
+	@Override
+	public String getSourceName() { return source.getSourceName(); }
+
+	@Override
+	public void setTokenFactory( TokenFactory<?> factory ) { source.setTokenFactory(factory); }
+
+	@Override
+	public TokenFactory<?> getTokenFactory() { return source.getTokenFactory(); }
+}
@@ -1,39 +1,36 @@
 // SymTabVisitor1.java
 //
 // This visitor class constructs a symbol table which includes the top level
-// names in a Goo program, including the formal parameters of functions and
-// the fields inside structs, but does not include local variables declared
-// inside function bodies.
+// names in a Goo program. It visits only the list of top level declarations
+// (and the imports): the types of the names are not known until pass 2,
+// which checks each declaration the first time one of its names is used
+// (see SymTabVisitor2.resolveDeclaration). Each name is given a type of
+// unknownType and remembers the declaration it came from.
 
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.tree.*;
 import java.util.*;
 
 public class SymTabVisitor1 extends GooBaseVisitor<Type> {
-	ParseTreeProperty<Scope> scopes = new ParseTreeProperty<Scope>();
-	ParseTreeProperty<Type> types = new ParseTreeProperty<Type>();
+	NodeMap<Scope> scopes = new NodeMap<Scope>();
+	ArrayList<ParserRuleContext> declarations = new ArrayList<ParserRuleContext>();
+	Compilation comp;
+	ReportError errors;
+	Names names;	// the identifier pool
 	BlockScope globals;
 	Scope currentScope;
-	LinkedList<Type> currentSignatureParams = new LinkedList<Type>();
-	LinkedList<Type> currentSignatureResult = new LinkedList<Type>();
-	boolean dumpSymTab = false;
-	boolean dumpPredefineds = false;
 
 	// constructor
-	//  t is the -dtsy command line flag
-	//  d is the -dsym command line flag
-	//  p is the -dpre command line flag
-	public SymTabVisitor1( boolean t, boolean d, boolean p ) {
-		Symbol.tracing = t;
-		dumpSymTab = d;
-		dumpPredefineds = p;
+	//  comp holds the options (-dtsy, -dsym, -dpre) and error reporting
+	public SymTabVisitor1( Compilation comp ) {
+		this.comp = comp;
+		errors = comp.errors;
+		names = comp.names;
 	}
 
 	// default constructor
 	public SymTabVisitor1() {
-		Symbol.tracing = false;
-		dumpSymTab = false;
-		dumpPredefineds = false;
+		this(new Compilation());
 	}
 
 	// ************ methods for accessing scope/type info for nodes
@@ -43,23 +40,37 @@ public class SymTabVisitor1 extends GooBaseVisitor<Type> {
 		scopes.put(ctx, s);
 	}
 
-	public ParseTreeProperty<Scope> getScopes() {
+	public NodeMap<Scope> getScopes() {
 		return scopes;
 	}
 
-	// associate type t with parse tree node ctx
-	Type saveType(ParserRuleContext ctx, Type t) {
-		types.put(ctx, t);
-		return t;
+	// the top level declarations in source order: the constSpec, typeSpec
+	// and varSpec nodes and the functionDecl nodes
+	public List<ParserRuleContext> getDeclarations() {
+		return declarations;
 	}
 
-	public ParseTreeProperty<Type> getTypes() {
-		return types;
+	// defines a package level name declared by decl
+	void declare(Symbol sy, ParserRuleContext decl) {
+		sy.setDeclaration(decl);
+		define(sy);
+	}
+
+	// adds sy to the current scope, reporting a duplicate declaration
+	void define(Symbol sy) {
+		if (!currentScope.define(sy)) {
+			errors.error(sy.getLineNumber(), 0, Diagnostic.Id.DUPLICATE_DECLARATION, sy.getName());
+			return;
+		}
+		if (comp.tracing) {
+			errors.flush();  // keep the messages in order with the trace
+			comp.out.println("SY: Defined symbol: "+sy.getName());
+		}
 	}
 
     // utility functions
 
-    static public String normalizeString( String raw, ParserRuleContext ctx ) {
+    static public String normalizeString( String raw, ParserRuleContext ctx, ReportError errors ) {
         StringBuilder sb = new StringBuilder();
         if (raw.charAt(0) == '\"') {
             for( int i=1; ; i++ ) {
@@ -81,7 +92,7 @@ public class SymTabVisitor1 extends GooBaseVisitor<Type> {
                             c = (char)n;
                             break;
                         default:
-                            ReportError.error(ctx, "unsupported escape code in strings: \\"+c);
+                            errors.error(ctx, Diagnostic.Id.BAD_ESCAPE, c);
                             return "";
                     }
                 }
@@ -102,183 +113,65 @@ public class SymTabVisitor1 extends GooBaseVisitor<Type> {
 
     @Override
 	public Type visitSourceFile(GooParser.SourceFileContext ctx) {
-		globals = new BlockScope(null);
-		globals.setScopeName("predefined names");
-		Predefined.AddPredefinedNames(globals);
+		// size the annotation tables for the whole tree
+		scopes = new NodeMap<Scope>(ctx.getNodeCount());
+		globals = comp.predefined.getScope();
 		currentScope = new BlockScope(globals);
 		currentScope.setScopeName("package level names");
 		saveScope(ctx, currentScope);
-	    if (dumpSymTab || Symbol.tracing)
-	        System.out.println("\n=== Pass 1 Output ===\n");
+	    if (comp.dumpSymTab || comp.tracing)
+	        comp.out.println("\n=== Pass 1 Output ===\n");
         visitChildren(ctx);
-		if (dumpSymTab)
-			currentScope.dumpScope();
+		errors.flush();
+		if (comp.dumpSymTab)
+			currentScope.dumpScope(comp.out);
 		currentScope = currentScope.getEnclosingScope();
-		if (dumpPredefineds)
-			currentScope.dumpScope();
+		if (comp.dumpPredefineds)
+			currentScope.dumpScope(comp.out);
 		return null;
 	}
 
-    @Override
-    public Type visitTypeName(GooParser.TypeNameContext ctx) {
-		String name = ctx.getText();
-		Symbol sy = currentScope.resolve(name);
-		if (sy == null)     // forward reference to a type?
-		    return Type.unknownType;
-		if (sy.getKind() != Symbol.Kind.TypeName) {
-			ReportError.error(ctx, name+" is not a type");
-			return Type.unknownType;
-		}
-		Type t = saveType(ctx,sy.getType());
-    return t;
-    }
-
-    @Override
-	public Type visitArrayType(GooParser.ArrayTypeContext ctx) {
-		Type t = visit(ctx.elementType());
-		return saveType(ctx,Type.newArrayType(t));
-	}
-
-
-    @Override
-	public Type visitSliceType(GooParser.SliceTypeContext ctx) {
-		Type t = visit(ctx.elementType());
-		return saveType(ctx,Type.newSliceType(t));
-	}
-
-    @Override
-	public Type visitStructType(GooParser.StructTypeContext ctx) {
-	    Type t = Type.newStructType(currentScope);
-		currentScope = (Scope)t;
-	    visitChildren(ctx);
-		currentScope = currentScope.getEnclosingScope();
-		return saveType(ctx,t);
-	}
-
-    @Override
-	public Type visitFieldDecl(GooParser.FieldDeclContext ctx) {
-		List<Token> ids = ctx.identifierList().idl;
-		Type typ = visit(ctx.type());
-		if (ids != null) {
-		    for( Token t : ids ) {
-		        Symbol sy = new Symbol(t, Symbol.Kind.Field, typ, currentScope);
-		        currentScope.define(sy);
-		    }
-		}
-		return saveType(ctx,typ);
-	}
-
-    @Override
-	public Type visitPointerType(GooParser.PointerTypeContext ctx) {
-		Type t = visit(ctx.baseType());
-		return saveType(ctx,Type.newPointerType(t));
-	}
-
-    @Override
-	public Type visitSignature(GooParser.SignatureContext ctx) {
-        Type rt = null;
-		// currentSignatureParams should contain all the input parameters
-		// Just have to grab the result type, if there is one
-		visit(ctx.parameters());
-		if (ctx.result() != null)
-		    rt = visit(ctx.result());
-		if (rt != null)
-			currentSignatureResult.add(rt);
-		return saveType(ctx,Type.newFunctionSignature(currentSignatureParams,currentSignatureResult));
-	}
-
-    @Override
-	public Type visitParameterDecl(GooParser.ParameterDeclContext ctx) {
-        visitChildren(ctx);
-		List<Token> ids = ctx.identifierList().idl;
-		Type typ = visit(ctx.type());
-		if (ids != null) {
-		    for( Token t : ids ) {
-		        Symbol sy = new Symbol(t, Symbol.Kind.Formal, typ, currentScope);
-		        currentScope.define(sy);
-		        currentSignatureParams.add(typ);
-		    }
-		}
-		return saveType(ctx,typ);
-	}
-
     @Override
 	public Type visitConstSpec(GooParser.ConstSpecContext ctx) {
-		List<Token> ids = ctx.identifierList().idl;
-		GooParser.ConstSpecRemContext csrx = ctx.constSpecRem();
-		Type typ = Type.unknownType;  // use this if type is missing
-		if (csrx != null && csrx.type() != null)
-			typ = visit(csrx.type());
-		for( Token t : ids ) {
-			String name = t.getText();
-			Symbol sy = new Symbol(t, Symbol.Kind.Constant, typ, currentScope);
-			currentScope.define(sy);
-		}
-		return saveType(ctx,typ);
+		declarations.add(ctx);
+		for( Token t : ctx.identifierList().idl )
+			declare(new Symbol(t, names.name(t), Symbol.Kind.Constant, Type.unknownType, currentScope), ctx);
+		return null;
 	}
 
     @Override
 	public Type visitTypeSpec(GooParser.TypeSpecContext ctx) {
+		declarations.add(ctx);
 		Token id = ctx.Identifier().getSymbol();
-		Type t = visit(ctx.type());
-		Type namedType = t.makeNamedCopy(id.getText());
-		Symbol sy = new Symbol(id, Symbol.Kind.TypeName, namedType, currentScope);
-		currentScope.define(sy);
-		return saveType(ctx,namedType);
+		declare(new Symbol(id, names.name(id), Symbol.Kind.TypeName, Type.unknownType, currentScope), ctx);
+		return null;
 	}
 
     @Override
 	public Type visitVarSpec(GooParser.VarSpecContext ctx) {
-		Type typ = visit(ctx.varSpecRem());
-		List<Token> ids = ctx.identifierList().idl;
-		if (ids != null) {
-		    for( Token tt : ids ) {
-		        Symbol sy = new Symbol(tt, Symbol.Kind.Variable, typ, currentScope);
-		        currentScope.define(sy);
-		    }
-		}
-    return saveType(ctx,typ);
-	}
-
-    @Override
-	public Type visitVarSpecRem(GooParser.VarSpecRemContext ctx) {
-        if (ctx.type() != null)
-            return saveType(ctx,visit(ctx.type()));
-		return Type.unknownType; // use this if type is missing from the declaration
+		declarations.add(ctx);
+		for( Token t : ctx.identifierList().idl )
+			declare(new Symbol(t, names.name(t), Symbol.Kind.Variable, Type.unknownType, currentScope), ctx);
+		return null;
 	}
 
     @Override
 	public Type visitFunctionDecl(GooParser.FunctionDeclContext ctx) {
+		declarations.add(ctx);
 		Token funcId = ctx.functionName().Identifier().getSymbol();
-		String funcName = funcId.getText();
-		FunctionSymbol function = new FunctionSymbol(funcName, currentScope);
+		FunctionSymbol function = new FunctionSymbol(names.name(funcId), Type.unknownType, currentScope);
 		function.setLineNumber(funcId.getLine());
-		currentScope.define(function);	// add function defn to current scope
-		currentScope = function;		// enter this new scope
-		saveScope(ctx, currentScope);	// remember scope for this parse tree node
-		currentSignatureParams.clear(); // prepare to build the signature: param types
-		currentSignatureResult.clear();	// prepare to build the signature: result types
-		Type signature = Type.unknownType;
-		if (ctx.signature() != null) {
-			signature = visit(ctx.signature());
-		} else if (ctx.function() != null)
-			signature = visit(ctx.function());
-		function.setType(signature);
-		currentScope = currentScope.getEnclosingScope();  // exit scope
-		return saveType(ctx,signature);
+		declare(function, ctx);	// add function defn to current scope
+		saveScope(ctx, function);	// remember scope for this parse tree node
+		return null;
 	}
 
-    @Override
-    public Type visitFunction(GooParser.FunctionContext ctx) {
-        return saveType(ctx,visit(ctx.signature()));
-    }
-
 	// importPath:   StringLit ;
 	@Override
 	public Type visitImportPath(GooParser.ImportPathContext ctx) {
 	    // System.out.println("importing: "+ctx.StringLit().getText());
-	    String path = normalizeString(ctx.StringLit().getText(), ctx);
-	    Packages.handleImport(path, currentScope, ctx);
+	    String path = normalizeString(ctx.StringLit().getText(), ctx, errors);
+	    Packages.handleImport(comp, path, currentScope, ctx);
 	    return null;
 	}
 
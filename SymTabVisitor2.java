@@ -1,36 +1,92 @@
 // SymTabVisitor2.java
 //
+// Completes the symbol table and checks types in a single traversal of
+// the tree. The package level declarations are checked first, in source
+// order, except that a declaration is checked as soon as one of its names
+// is used (see resolveDeclaration); so declarations are checked in
+// dependency order and forward references resolve normally. A reference
+// to a declaration which is still being checked (e.g. a struct type
+// with a field which points to the same struct type) is left unknown,
+// and the declaration containing it is put on a worklist to be checked
+// again once all the declarations have types. The function bodies are
+// checked last.
+//
+// After the declarations have been checked, a function body only reads
+// the package scope, so the bodies are checked in parallel on a fork-join
+// pool (see BodyTask). Each task has its own visitor, with its own block
+// scopes, its own ReportError and its own output buffer; these are merged
+// in source order, so the output does not depend on the timing.
 
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.tree.*;
 
 import java.util.*;
-import java.util.function.BiFunction;
+import java.util.concurrent.*;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 
 public class SymTabVisitor2 extends GooBaseVisitor<Type> {
-	ParseTreeProperty<Scope> scopes;
-	ParseTreeProperty<Type> types;
+	NodeMap<Scope> scopes;
+	NodeMap<Type> types = new NodeMap<Type>();
+	NodeMap<Constant> values = new NodeMap<Constant>();
+	NodeMap<Symbol> uses = new NodeMap<Symbol>();
 	BlockScope globals;
 	Scope currentScope;
+	ScopeStack blocks;	// the blocks of the function body being visited
 	LinkedList<Type> currentSignatureParams = new LinkedList<Type>();
 	LinkedList<Type> currentSignatureResult = new LinkedList<Type>();
 	int arraySize = 0;
-	boolean dumpSymTab = false;
+	List<ParserRuleContext> declarations = new ArrayList<ParserRuleContext>();
+	Scope packageScope;
+	NodeMap<Boolean> resolved = new NodeMap<Boolean>();	// declarations checked
+	ArrayList<ParserRuleContext> resolving = new ArrayList<ParserRuleContext>();  // being checked, innermost last
+	LinkedHashSet<ParserRuleContext> worklist = new LinkedHashSet<ParserRuleContext>();
+	boolean declarationsDone = false;
+	Compilation comp;
+	ReportError errors;
+	Names names;	// the identifier pool
+	PrintStream out;	// destination for traces and dumps
+	TypeChecking checker;
+	Predefined predef;
 
 	// ************** constructors ******************
 
 	// constructor
-	//  trace is the -dtsy command line flag
-	//  dump  is the -dsym command line flag
-	public SymTabVisitor2( boolean trace, boolean dump, boolean p ) {
-		Symbol.tracing = trace;
-		dumpSymTab = dump;
+	//  comp holds the options (-dtsy, -dsym) and error reporting;
+	//  it must be the same one as used for pass 1
+	public SymTabVisitor2( Compilation comp ) {
+		this.comp = comp;
+		errors = comp.errors;
+		names = comp.names;
+		out = comp.out;
+		checker = new TypeChecking(comp);
+		predef = comp.predefined;
+		blocks = new ScopeStack(comp.names, null);
+	}
+
+	// constructor for checking function bodies in parallel: shares the
+	// node annotations of v, but has its own block scopes and reports
+	// to errors and out
+	private SymTabVisitor2( SymTabVisitor2 v, ReportError errors, PrintStream out ) {
+		comp = v.comp;
+		this.errors = errors;
+		names = v.names;
+		this.out = out;
+		checker = new TypeChecking(comp, errors);
+		predef = v.predef;
+		blocks = new ScopeStack(comp.names, null);
+		scopes = v.scopes;
+		types = v.types;
+		values = v.values;
+		uses = v.uses;
+		resolved = v.resolved;
+		packageScope = currentScope = v.packageScope;
+		declarationsDone = true;
 	}
 
 	// default constructor
 	public SymTabVisitor2() {
-		Symbol.tracing = false;
-		dumpSymTab = false;
+		this(new Compilation());
 	}
 
 	// ******methods for associating data with tree nodes *********
@@ -45,24 +101,29 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 		currentScope = scopes.get(ctx);
 	}
 
-	public void setScopes(ParseTreeProperty<Scope> scopes) {
+	public void setScopes(NodeMap<Scope> scopes) {
 		this.scopes = scopes;
 	}
 
-	public ParseTreeProperty<Scope> getScopes() {
+	public NodeMap<Scope> getScopes() {
 		return scopes;
 	}
 
 	// access or set type information associated with a node
 
-	public void setTypes(ParseTreeProperty<Type> types) {
+	public void setTypes(NodeMap<Type> types) {
 		this.types = types;
 	}
 
-	public ParseTreeProperty<Type> getTypes() {
+	public NodeMap<Type> getTypes() {
 		return types;
 	}
 
+	// the package level declarations found by pass 1
+	public void setDeclarations(List<ParserRuleContext> decls) {
+		declarations = decls;
+	}
+
 	// attaches a type to a parse tree node; the type is returned as
 	// the method result because allows visit methods to use succinct
 	// code like this when returning from a visit to node ctx:
@@ -78,24 +139,112 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 		return types.get(ctx);
 	}
 
+	// access or set the value of a constant expression; an expression
+	// which does not have a constant value has no associated value
+	public NodeMap<Constant> getValues() {
+		return values;
+	}
+
+	public void associateValue(ParserRuleContext ctx, Constant v) {
+		if (v != null)
+			values.put(ctx, v);
+	}
+
+	public Constant lookupValue(ParserRuleContext ctx) {
+		return values.get(ctx);
+	}
+
+	// access the symbol which an identifier use was resolved to; the
+	// symbol holds the depth and frame slot of its declaration
+	public NodeMap<Symbol> getUses() {
+		return uses;
+	}
+
+	public Symbol lookupSymbol(ParserRuleContext ctx) {
+		return uses.get(ctx);
+	}
+
+	// the symbol named by an expression which is just an identifier
+	// (possibly in parentheses), otherwise null
+	Symbol operandSymbol(ParserRuleContext ctx) {
+		while( ctx != null ) {
+			if (ctx instanceof GooParser.OperandNameContext)
+				return lookupSymbol(ctx);
+			if (ctx instanceof GooParser.ExpressionContext)
+				ctx = ctx.getChildCount() == 1 ? ((GooParser.ExpressionContext)ctx).unaryExpr(0) : null;
+			else if (ctx instanceof GooParser.UnaryExprContext)
+				ctx = ((GooParser.UnaryExprContext)ctx).primaryExpr();
+			else if (ctx instanceof GooParser.PrimaryExprContext)
+				ctx = ((GooParser.PrimaryExprContext)ctx).operand();
+			else if (ctx instanceof GooParser.OperandContext) {
+				GooParser.OperandContext octx = (GooParser.OperandContext)ctx;
+				ctx = octx.operandName() != null ? octx.operandName() : octx.expression();
+			} else
+				return null;
+		}
+		return null;
+	}
+
+	// adds sy to the current scope, reporting a duplicate declaration
+	void define(Symbol sy) {
+		if (!currentScope.define(sy)) {
+			errors.error(sy.getLineNumber(), 0, currentScope instanceof Type.Struct
+				? Diagnostic.Id.DUPLICATE_FIELD : Diagnostic.Id.DUPLICATE_DECLARATION, sy.getName());
+			return;
+		}
+		traceDefinition(sy);
+	}
+
+	// the -dtsy trace of a definition: formals are traced as such, and
+	// the fields of a struct are not traced
+	void traceDefinition(Symbol sy) {
+		if (!comp.tracing || currentScope instanceof Type.Struct) return;
+		errors.flush();  // keep the messages in order with the trace
+		if (currentScope instanceof FunctionSymbol)
+			out.println("SY: Defined formal: "+sy.getName());
+		else
+			out.println("SY: Defined symbol: "+sy.getName());
+	}
+
     // Updates the type in a symbol table entry;
     // the entry is created if it does not exist in current scope
     public void updateOrDefine(Token tok, Symbol.Kind k, Type typ) {
-        Symbol sy = currentScope.resolveInCurrent(tok.getText());
+        String name = names.name(tok);
+        Symbol sy = currentScope.resolveInCurrent(name);
         if (sy != null) {
             sy.setType(typ);
         } else {
-            sy = new Symbol(tok, k, typ, currentScope);
-            currentScope.define(sy);
+            sy = new Symbol(tok, name, k, typ, currentScope);
+            define(sy);
         }
 	}
 
+    // As updateOrDefine when a declaration is checked again (see
+    // resolveDeclaration); the first time, the name is defined, so that a
+    // duplicate in the same scope is reported
+    void declareOrUpdate(Token tok, Symbol.Kind k, Type typ, boolean again) {
+        if (again)
+            updateOrDefine(tok, k, typ);
+        else
+            define(new Symbol(tok, names.name(tok), k, typ, currentScope));
+    }
+
     public Type identType( Token tok, ParserRuleContext ctx) {
-        Symbol sy = currentScope.resolve(tok.getText());
+        String name = names.name(tok);
+        Symbol sy = currentScope.resolve(name);
+        if (sy != null && sy.getDeclaration() != null && !declarationsDone)
+            resolveDeclaration(sy.getDeclaration());
         if (sy == null) {
-            sy = new Symbol(tok, Symbol.Kind.Unknown, Type.unknownType, currentScope);
-            currentScope.define(sy);
-            ReportError.error(ctx, "undeclared identifier: "+tok.getText());
+            sy = new Symbol(tok, name, Symbol.Kind.Unknown, Type.unknownType, currentScope);
+            define(sy);
+            errors.error(ctx, Diagnostic.Id.UNDECLARED, name);
+        }
+        uses.put(ctx, sy);
+        if (sy.getKind() == Symbol.Kind.Constant) {
+            Constant v = sy.getConstValue();
+            if (v == null && sy.getType() instanceof Type.UntypedNumber)
+                v = Constant.of((Type.UntypedNumber)sy.getType());  // declared later
+            associateValue(ctx, v);
         }
         return sy.getType();
     }
@@ -119,10 +268,12 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 
     @Override
     public Type visitTypeName(GooParser.TypeNameContext ctx) {
-		String name = ctx.getText();
+		String name = names.name(ctx.Identifier().getSymbol());
 		Symbol sy = currentScope.resolve(name);
+		if (sy != null && sy.getDeclaration() != null && !declarationsDone)
+			resolveDeclaration(sy.getDeclaration());
 		if (sy == null || sy.getKind() != Symbol.Kind.TypeName) {
-			ReportError.error(ctx, name+" is not a type");
+			errors.error(ctx, Diagnostic.Id.NOT_A_TYPE, name);
 			return Type.unknownType;
 		}
 		return associateType(ctx, sy.getType());
@@ -134,12 +285,14 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 	public Type visitArrayType(GooParser.ArrayTypeContext ctx) {
 		Type typ = lookupType(ctx);
 		visit(ctx.arrayLength());
+		int size = arraySize;  // visiting the element type may change arraySize
 		Type et = visit(ctx.elementType());
 		if (typ == null)
-			typ = Type.newArrayType(et);
-		else
+			typ = comp.types.newArrayType(et, size);
+		else {
 			((Type.Array)typ).setElementType(et);
-		((Type.Array)typ).setSize(arraySize);
+			((Type.Array)typ).setSize(size);
+		}
 		return associateType(ctx,typ);
 	}
 
@@ -147,7 +300,7 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 	public Type visitArrayLength(GooParser.ArrayLengthContext ctx) {
 		Type typ = visit(ctx.expression());
 		arraySize = getIntValue(ctx.expression());
-		TypeChecking.checkAssignability(Predefined.intType, typ, ctx);
+		checker.checkAssignability(predef.intType, typ, ctx);
 		return associateType(ctx,typ);
 	}
 
@@ -159,7 +312,7 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 		if (typ != null && typ.isComplete()) return typ;
 		Type et = visit(ctx.elementType());
 		if (typ == null)
-			typ = Type.newSliceType(et);
+			typ = comp.types.newSliceType(et);
 		else
 			((Type.Slice)typ).setElementType(et);
 		return associateType(ctx,typ);
@@ -180,18 +333,25 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 	    	dest.putAll(((Type.Struct)newt).getFields());
 	    	newt = typ;
 	    }
+	    // complete once all the field types are known; its answers may then
+	    // be remembered (see TypePairs)
+	    boolean complete = true;
+	    for( Symbol f : ((Type.Struct)newt).getFields().values() )
+	    	if (f.getType() == null || !f.getType().isComplete()) complete = false;
+	    newt.setComplete(complete);
 		return associateType(ctx,newt);
 	}
 
-	// fieldDeclList:  /* empty */ |  (fieldDecl ';')* fieldDecl optSemi ;
+	// fieldDeclList:  /* empty */ |  fieldDecl (';' fieldDecl)* ';'? ;
 
     @Override
 	public Type visitFieldDecl(GooParser.FieldDeclContext ctx) {
+		boolean again = lookupType(ctx) != null;
 		List<Token> ids = ctx.identifierList().idl;
 		Type typ = visit(ctx.type());
 		if (ids != null) {
 		    for( Token tok : ids ) {
-		        updateOrDefine(tok, Symbol.Kind.Field, typ);
+		        declareOrUpdate(tok, Symbol.Kind.Field, typ, again);
 		    }
 		}
 		return associateType(ctx,typ);
@@ -203,7 +363,7 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 		if (typ != null && typ.isComplete()) return typ;
 		Type bt = visit(ctx.baseType());
 		if (typ == null)
-			typ = Type.newPointerType(bt);
+			typ = comp.types.newPointerType(bt);
 		else
 			((Type.Pointer)typ).setBaseType(bt);
 		return associateType(ctx,typ);
@@ -222,9 +382,9 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 		if (ctx.result() != null)
 		    rt = visit(ctx.result());
 		if (rt != null)
-			currentSignatureResult.add(typ);
+			currentSignatureResult.add(rt);
 		if (typ == null)
-			typ = Type.newFunctionSignature(currentSignatureParams,currentSignatureResult);
+			typ = comp.types.newFunctionSignature(currentSignatureParams,currentSignatureResult);
 		else {
 			((Type.Function)typ).setParameters(currentSignatureParams);
 			((Type.Function)typ).setResults(currentSignatureResult);
@@ -242,12 +402,12 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 	public Type visitParameterDecl(GooParser.ParameterDeclContext ctx) {
 		Type typ = lookupType(ctx);
 		if (typ != null && typ.isComplete()) return typ;
-        visitChildren(ctx);
+		boolean again = typ != null;
 		List<Token> ids = ctx.identifierList().idl;
 		typ = visit(ctx.type());
 		if (ids != null) {
 		    for( Token tok : ids ) {
-		        updateOrDefine(tok, Symbol.Kind.Formal, typ);
+		        declareOrUpdate(tok, Symbol.Kind.Formal, typ, again);
 		        currentSignatureParams.add(typ);
 		    }
 		}
@@ -259,40 +419,100 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 	    return associateType(ctx, identType(ctx.Identifier().getSymbol(), ctx));
 	}
 
+	// The statements of a block, and of all the blocks nested in it, are
+	// checked with a stack of work instead of by recursion. A block, an if
+	// statement or a for statement pushes its parts onto the stack, so the
+	// depth of the Java stack does not grow with the nesting of the blocks.
+	// A block reached in any other way (the body of a function, or of a
+	// function literal) starts a new stack.
 	@Override
 	public Type visitBlock(GooParser.BlockContext ctx) {
-		currentScope = new BlockScope(currentScope);
-		visit(ctx.statementList());
-		if (dumpSymTab)
-		    currentScope.dumpScope();
-		currentScope = currentScope.getEnclosingScope();
+		ArrayDeque<Object> work = new ArrayDeque<>();
+		work.push(ctx);
+		while( !work.isEmpty() ) {
+			Object w = work.pop();
+			if (w instanceof Scope)
+				leaveBlock((Scope)w);
+			else if (w instanceof GooParser.BlockContext)
+				enterBlock((GooParser.BlockContext)w, work);
+			else if (w instanceof GooParser.IfStmtContext) {
+				GooParser.IfStmtContext ifx = (GooParser.IfStmtContext)w;
+				if (ifx.simpleStmt() != null) visit(ifx.simpleStmt());
+				Type typ = visit(ifx.expression());
+				checker.checkAssignability(Type.boolType, typ, ifx);
+				GooParser.ElsePartContext elsex = ifx.elsePart();
+				if (elsex.ifStmt() != null) work.push(elsex.ifStmt());
+				if (elsex.block() != null) work.push(elsex.block());
+				work.push(ifx.block());
+			} else if (w instanceof GooParser.ForStmtContext) {
+				GooParser.ForStmtContext forx = (GooParser.ForStmtContext)w;
+				if (forx.condition() != null) visit(forx.condition());
+				if (forx.forClause() != null) visit(forx.forClause());
+				work.push(forx.block());
+			} else {
+				GooParser.StatementContext stmt = (GooParser.StatementContext)w;
+				if (stmt.block() != null) work.push(stmt.block());
+				else if (stmt.ifStmt() != null) work.push(stmt.ifStmt());
+				else if (stmt.forStmt() != null) work.push(stmt.forStmt());
+				else visit(stmt);
+			}
+		}
 		return Type.voidType;
 	}
 
-	// statementList :	/* empty */ | (statement ';')* statement optSemi ;
+	// opens the scope of a block and pushes its statements, then the
+	// scope to return to when they have been checked
+	private void enterBlock(GooParser.BlockContext ctx, ArrayDeque<Object> work) {
+		work.push(currentScope);
+		if (blocks.getDepth() == 0)
+			blocks.setEnclosingScope(currentScope);  // the function
+		blocks.push();
+		currentScope = blocks;
+		List<GooParser.StatementContext> stmts = ctx.statementList().statement();
+		for( int i=stmts.size()-1; i>=0; i-- )
+			work.push(stmts.get(i));
+	}
+
+	private void leaveBlock(Scope outer) {
+		if (comp.dumpSymTab) {
+			errors.flush();
+		    blocks.dumpScope(out);
+		}
+		blocks.pop();
+		currentScope = outer;
+	}
+
+	// statementList :	/* empty */ | statement (';' statement)* ;
 
 	// declaration:   constDecl | typeDecl | varDecl ;
 
-	// topLevelDeclList:    /* empty */ | (topLevelDecl ';')* topLevelDecl optSemi ;
+	// topLevelDeclList:    /* empty */ | topLevelDecl (';' topLevelDecl)* ';'? ;
 
 	// topLevelDecl:   declaration | functionDecl ;
 
 	// constDecl:   CONST constSpec | CONST '(' constSpecList ')' ;
 
-	// constSpecList:   /* empty */ | (constSpec ';')* constSpec optSemi ;
+	// constSpecList:   /* empty */ | constSpec (';' constSpec)* ';'? ;
 
     @Override
 	public Type visitConstSpec(GooParser.ConstSpecContext ctx) {
 		List<Token> ids = ctx.identifierList().idl;
 		GooParser.ConstSpecRemContext csrx = ctx.constSpecRem();
 		Type typ = Type.unknownType;  // use this if type is missing
-    if (csrx != null && csrx.type() != null) {
-			typ = visit(csrx.type());
-		} else {
-			typ = visit(ctx.constSpecRem());
+		if (csrx != null)
+			typ = visit(csrx);  // also computes the values
+
+		typ = matchNamesToTypes(typ, ids, Symbol.Kind.Constant);
+		// record the constant values in the symbol table
+		if (csrx != null && ids != null) {
+			List<GooParser.ExpressionContext> exps = csrx.expressionList().exl;
+			for( int k=0; k<ids.size() && k<exps.size(); k++ ) {
+				Symbol sy = currentScope.resolveInCurrent(names.name(ids.get(k)));
+				if (sy != null)
+					sy.setConstValue(lookupValue(exps.get(k)));
+			}
 		}
-
-		return matchNamesToTypes(typ, ids, Symbol.Kind.Constant);
+		return typ;
 	}
 
 	@Override
@@ -306,7 +526,7 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 			return typeList;
 		// otherwise have to check that the expressions are compatible
 		for( Type et : typeList.getTypes() ) {
-			TypeChecking.checkAssignability(typ, et, ctx);
+			checker.checkAssignability(typ, et, ctx);
 		}
 		return typ;
 	}
@@ -327,21 +547,28 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 
 	// typeDecl:   TYPE typeSpec | TYPE '(' typeSpecList ')' ;
 
-	// typeSpecList:   /* empty */ | (typeSpec ';')* typeSpec optSemi ;
+	// typeSpecList:   /* empty */ | typeSpec (';' typeSpec)* ';'? ;
 
     @Override
 	public Type visitTypeSpec(GooParser.TypeSpecContext ctx) {
-		Type typ = lookupType(ctx);
-		if (typ != null && typ.isComplete()) return typ;
+		Type named = lookupType(ctx);
+		if (named != null && named.isComplete()) return named;
 		Token id = ctx.Identifier().getSymbol();
-		typ = visit(ctx.type());
-		updateOrDefine(id, Symbol.Kind.TypeName, typ);
-		return associateType(ctx,typ);
+		Type typ = visit(ctx.type());
+		// when the declaration is checked again, the types built the first
+		// time have been completed in place; an unknown type (a reference
+		// to a type on a cycle) is left unnamed until then
+		if (typ.getKind() == TypeKind.Unknown)
+			named = typ;
+		else if (named == null || named.getKind() == TypeKind.Unknown)
+			named = typ.makeNamedCopy(names.name(id));
+		updateOrDefine(id, Symbol.Kind.TypeName, named);
+		return associateType(ctx,named);
 	}
 
 	// varDecl:   VAR varSpec | VAR '(' varSpecList ')' ;
 
-	// varSpecList:   /* empty */ | (varSpec ';')* varSpec optSemi ;
+	// varSpecList:   /* empty */ | varSpec (';' varSpec)* ';'? ;
 
     @Override
 	public Type visitVarSpec(GooParser.VarSpecContext ctx) {
@@ -363,7 +590,7 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
         	extyp = (Type.TypeList)visit(exctx);
         if (typ != null && extyp != null) {
         	for( Type et : extyp.getTypes() ) {
-        		TypeChecking.checkAssignability(typ, et, ctx);
+        		checker.checkAssignability(typ, et, ctx);
         	}
         	return associateType(ctx,typ);
         }
@@ -372,7 +599,7 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
         if (typ != null)
         	return associateType(ctx, typ);
         if (typ != Type.unknownType)
-            ReportError.error(ctx, "could not determine types of variable(s)");
+            errors.error(ctx, Diagnostic.Id.UNTYPED_VARIABLES);
 		return Type.unknownType;
 	}
 
@@ -387,31 +614,51 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 
     @Override
 	public Type visitFunctionDecl(GooParser.FunctionDeclContext ctx) {
-		Token funcId = ctx.functionName().Identifier().getSymbol();
-		String funcName = funcId.getText();
 		// the function is a package level name and is already in the symbol table
-		FunctionSymbol function = (FunctionSymbol)currentScope.resolveInCurrent(funcName);
+		FunctionSymbol function = (FunctionSymbol)scopes.get(ctx);
+		resolveDeclaration(ctx);	// check the signature, if not done already
+		if (ctx.function() != null) {
+			currentScope = function;		// enter the new scope
+			visit(ctx.function());
+			currentScope = currentScope.getEnclosingScope();  // exit scope
+		}
+		return associateType(ctx,function.getType());
+	}
+
+	// Checks the signature of a function declaration; the scope of the
+	// function holds the formal parameters
+	private Type visitFunctionSignature(GooParser.FunctionDeclContext ctx) {
+		FunctionSymbol function = (FunctionSymbol)scopes.get(ctx);
 		currentScope = function;		// enter the new scope
-		currentSignatureParams.clear(); // prepare to rebuild the signature: param types
-		currentSignatureResult.clear();	// prepare to rebuild the signature: result types
-		Type signature = Type.unknownType;
-		if (ctx.signature() != null) {
-			signature = visit(ctx.signature());
-			function.setType(signature);
-		} else if (ctx.function() != null)
-			signature = visit(ctx.function());
+		currentSignatureParams.clear(); // prepare to build the signature: param types
+		currentSignatureResult.clear();	// prepare to build the signature: result types
+		GooParser.SignatureContext sig =
+			ctx.signature() != null ? ctx.signature() : ctx.function().signature();
+		Type signature = visit(sig);
+		function.setType(signature);
 		currentScope = currentScope.getEnclosingScope();  // exit scope
-		return associateType(ctx,signature);
+		return signature;
 	}
 
 	// functionName:   Identifier ;
 
     @Override
     public Type visitFunction(GooParser.FunctionContext ctx) {
-        Type signature = visit(ctx.signature());
-        ((Symbol)currentScope).setType(signature);
-        visit(ctx.functionBody());
-        return associateType(ctx,signature);
+        // the signature was checked with the package level declarations;
+        // a lowered body is turned back into a parse tree while it is checked
+        GooParser.FunctionBodyContext body = ctx.functionBody();
+        CompactAst lowered = comp.getBody(body);
+        if (lowered != null) {
+            lowered.materialize(body);
+            try {
+                visit(body);
+            } finally {
+                CompactAst.detach(body);
+            }
+        } else
+            visit(body);
+        ((FunctionSymbol)currentScope).setFrameSize(blocks.getFrameSize());
+        return associateType(ctx,((Symbol)currentScope).getType());
     }
 
 	// functionBody:   block ;
@@ -419,9 +666,17 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 	// operand:   literal | operandName | '(' expression ')' ;
 	@Override
 	public Type visitOperand(GooParser.OperandContext ctx) {
-	    if (ctx.expression() != null)
-	        return associateType(ctx,visit(ctx.expression()));
-	    return associateType(ctx,visitChildren(ctx));
+	    if (ctx.expression() != null) {
+	        Type typ = visit(ctx.expression());
+	        associateValue(ctx, lookupValue(ctx.expression()));
+	        return associateType(ctx,typ);
+	    }
+	    Type typ = visitChildren(ctx);
+	    if (ctx.operandName() != null)
+	        associateValue(ctx, lookupValue(ctx.operandName()));
+	    else if (ctx.literal().basicLit() != null)
+	        associateValue(ctx, lookupValue(ctx.literal().basicLit()));
+	    return associateType(ctx,typ);
 	}
 
 	// literal:   basicLit | compositeLit ;
@@ -429,12 +684,16 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 	@Override
 	public Type visitBasicLit(GooParser.BasicLitContext ctx) {
 	    Type typ;
-		if (ctx.IntLit() != null || ctx.FloatLit() != null)
-			typ = Type.newUntypedNumber(ctx.getText());
-		else if (ctx.StringLit() != null)
-			typ = Predefined.stringType;
-		else
-			typ = Predefined.runeType;
+		if (ctx.IntLit() != null || ctx.FloatLit() != null) {
+			typ = comp.newUntypedNumber(ctx.getStart().getText(), ctx, errors);
+			associateValue(ctx, Constant.of((Type.UntypedNumber)typ));
+		} else if (ctx.StringLit() != null) {
+			typ = predef.stringType;
+			associateValue(ctx, literalValue(ctx.getStart().getText()));
+		} else {
+			typ = predef.runeType;
+			associateValue(ctx, literalValue(ctx.getStart().getText()));
+		}
 		return associateType(ctx,typ);
 	}
 
@@ -447,45 +706,141 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 
 	@Override
 	public Type visitQualifiedIdent(GooParser.QualifiedIdentContext ctx) {
-		String pkgName = ctx.packageName().getText();
-		String memberName = ctx.Identifier().getText();
+		String pkgName = names.name(ctx.packageName().Identifier().getSymbol());
+		String memberName = names.name(ctx.Identifier().getSymbol());
 		Symbol pkg = currentScope.resolve(pkgName);
 		if (pkg != null && pkg.getKind() == Symbol.Kind.Package) {
 			Symbol member = ((Packages.PackageSymbol)pkg).getMember(memberName);
 			if (member != null)
 				return associateType(ctx,member.getType());
-			ReportError.error(ctx, pkgName + "." + memberName + " not found");
+			errors.error(ctx, Diagnostic.Id.MEMBER_NOT_FOUND, pkgName, memberName);
 		} else
-			ReportError.error(ctx, "package " + pkgName + " not found");
+			errors.error(ctx, Diagnostic.Id.PACKAGE_NOT_FOUND, pkgName);
 		return Type.unknownType;
 	}
 
 	@Override
 	public Type visitCompositeLit(GooParser.CompositeLitContext ctx) {
 		Type typ = visit(ctx.literalType());
-		Type extyp = visit(ctx.literalValue());
-		TypeChecking.checkAssignability(typ, extyp, ctx);
+		Mismatch m = checkLiteralValue(typ, ctx.literalValue());
+		if (m != null && m != Mismatch.UNREPORTED)
+			errors.error(ctx, m.id, m.args);
 		return associateType(ctx,typ);
 	}
 
 	@Override
 	public Type visitLiteralType(GooParser.LiteralTypeContext ctx) {
 		if (ctx.elementType() != null)
-			return associateType(ctx,Type.newSliceType(visit(ctx.elementType())));
+			return associateType(ctx,comp.types.newSliceType(visit(ctx.elementType())));
 		else
 			return associateType(ctx,super.visitLiteralType(ctx));
 	}
 
-	@Override
-	public Type visitLiteralValue(GooParser.LiteralValueContext ctx) {
-		GooParser.ElementListContext expList = ctx.elementList();
-		if (expList == null || expList.exl.size() == 0)
-			return associateType(ctx,Type.newTypeList(new Type[0]));
-		Type[] extypes = new Type[expList.exl.size()];
-		int k = 0;
-		for( GooParser.ElementContext xctx : expList.exl )
-			extypes[k++] = visit(xctx);
-		return associateType(ctx,Type.newTypeList(extypes));
+	// literalValue:   '{' '}' | '{' elementList ','? '}' ;
+
+	// the first element of a composite literal which does not fit, to be
+	// reported when all the elements have been visited
+	private static class Mismatch {
+		// an untyped constant which does not fit: it stops the checking
+		// but is not reported, as in TypeChecking.checkAssignability
+		static final Mismatch UNREPORTED = new Mismatch(null);
+
+		final Diagnostic.Id id;
+		final Object[] args;
+
+		Mismatch( Diagnostic.Id id, Object... args ) {
+			this.id = id;
+			this.args = args;
+		}
+	}
+
+	// Visits the elements of a literal value of type typ, checking each
+	// one against its element or field type as it is visited; no list of
+	// the element types is made. Once an element does not fit, the rest
+	// are only visited, so that just the first mismatch (in a nested
+	// literal value too) is reported, after the other messages about the
+	// elements. Untyped constants, which make up most large tables, are
+	// checked against an array or slice element type once for integers
+	// and once for other numbers.
+	private Mismatch checkLiteralValue( Type typ, GooParser.LiteralValueContext ctx ) {
+		associateType(ctx,typ);
+		GooParser.ElementListContext elems = ctx.elementList();
+		List<GooParser.ElementContext> exl = elems == null
+			? Collections.<GooParser.ElementContext>emptyList() : elems.exl;
+		Type et = null;		// the element type of an array or slice
+		Iterator<Symbol> fields = null;
+		if (typ == Type.unknownType || typ == Type.anyType)
+			et = Type.unknownType;
+		else if (typ instanceof Type.Array)
+			et = ((Type.Array)typ).getElementType();
+		else if (typ instanceof Type.Slice)
+			et = ((Type.Slice)typ).getElementType();
+		else if (typ instanceof Type.Struct)
+			fields = ((Type.Struct)typ).getFields().values().iterator();
+		else {
+			// not a composite type: the whole literal value does not fit
+			for( GooParser.ElementContext x : exl )
+				visitUnchecked(x.value());
+			return new Mismatch(Diagnostic.Id.INCOMPATIBLE, elementTypes(ctx), typ);
+		}
+		int intsFit = -1, floatsFit = -1;	// untyped constants in et: -1 => not known yet
+		Mismatch first = null;
+		for( GooParser.ElementContext x : exl ) {
+			Type dest = et;
+			if (fields != null) {
+				if (!fields.hasNext()) {
+					visitUnchecked(x.value());
+					if (first == null)
+						first = new Mismatch(Diagnostic.Id.TOO_MANY_VALUES);
+					continue;
+				}
+				dest = fields.next().getType();
+			}
+			if (first != null) dest = Type.unknownType;
+			GooParser.ValueContext v = x.value();
+			if (v.literalValue() != null) {
+				Mismatch m = checkLiteralValue(dest, v.literalValue());
+				if (first == null) first = m;
+				continue;
+			}
+			Type t = visit(v.expression());
+			if (first != null) continue;
+			if (t instanceof Type.UntypedNumber && dest == et) {
+				if (((Type.UntypedNumber)t).isInteger()) {
+					if (intsFit < 0) intsFit = TypeChecking.isAssignable(et, t) ? 1 : 0;
+					if (intsFit == 1) continue;
+				} else {
+					if (floatsFit < 0) floatsFit = TypeChecking.isAssignable(et, t) ? 1 : 0;
+					if (floatsFit == 1) continue;
+				}
+				first = Mismatch.UNREPORTED;
+			} else if (!TypeChecking.isAssignable(dest, t))
+				first = t instanceof Type.UntypedNumber ? Mismatch.UNREPORTED
+					: new Mismatch(Diagnostic.Id.INCOMPATIBLE, t, dest);
+		}
+		return first;
+	}
+
+	// visits an element which is not checked
+	private void visitUnchecked( GooParser.ValueContext v ) {
+		if (v.literalValue() != null)
+			checkLiteralValue(Type.unknownType, v.literalValue());
+		else
+			visit(v.expression());
+	}
+
+	// the types of the elements of a literal value which has been visited,
+	// for a message about the whole of it
+	private Type.TypeList elementTypes( GooParser.LiteralValueContext ctx ) {
+		GooParser.ElementListContext elems = ctx.elementList();
+		if (elems == null)
+			return Type.newTypeList(new Type[0]);
+		Type[] types = new Type[elems.exl.size()];
+		for( int k=0; k<types.length; k++ ) {
+			GooParser.ValueContext v = elems.exl.get(k).value();
+			types[k] = v.literalValue() != null ? elementTypes(v.literalValue()) : lookupType(v.expression());
+		}
+		return Type.newTypeList(types);
 	}
 
 	// elementList:   exl+=element (',' exl+=element)*  ;
@@ -496,9 +851,12 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 
 	@Override
 	public Type visitPrimaryExpr(GooParser.PrimaryExprContext ctx) {
-    // ReportError.error(ctx, "asdfsfdsdf");
-    if (ctx.operand() != null)		    // ReportError.error(ctx, "asdfsfdsdf");
-			return associateType(ctx,visit(ctx.operand()));
+    // errors.error(ctx, "asdfsfdsdf");
+    if (ctx.operand() != null) {		    // errors.error(ctx, "asdfsfdsdf");
+			Type typ = visit(ctx.operand());
+			associateValue(ctx, lookupValue(ctx.operand()));
+			return associateType(ctx,typ);
+		}
 
 		if (ctx.conversion() != null)
 			return associateType(ctx,visit(ctx.conversion()));
@@ -507,12 +865,12 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 		if (ctx.selector() != null) {
 			// it parses as selecting a field from a struct or a
 			// method from an imported package
-			String fieldName = ctx.selector().Identifier().getText();
+			String fieldName = names.name(ctx.selector().Identifier().getSymbol());
 			if (typ instanceof Type.Struct) {
 				Symbol s = ((Type.Struct)typ).resolveInCurrent(fieldName);
 				if (s != null)
 					return associateType(ctx,s.getType());
-				ReportError.error(ctx, "field "+fieldName+" not found");
+				errors.error(ctx, Diagnostic.Id.FIELD_NOT_FOUND, fieldName);
 			} else if (typ instanceof Type.Pointer) {
 
 			    Type.Pointer ptyp = (Type.Pointer)typ;
@@ -521,21 +879,21 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 			        Symbol s = styp.resolveInCurrent(fieldName);
     				if (s != null)
     					return associateType(ctx,s.getType());
-    				ReportError.error(ctx, "field "+fieldName+" not found");
+    				errors.error(ctx, Diagnostic.Id.FIELD_NOT_FOUND, fieldName);
 			    } else if (ptyp.getBaseType() != Type.unknownType)
-			        ReportError.error(ctx, "dot operator applied to non-struct value");
+			        errors.error(ctx, Diagnostic.Id.NOT_A_STRUCT);
 			} else if (typ != Type.unknownType) {
 			    // maybe it was a package name on the left of the dot
-			    String lhs = ctx.primaryExpr().getText();
-			    Symbol sy = currentScope.resolve(lhs);
+			    Symbol sy = operandSymbol(ctx.primaryExpr());
 			    if (sy != null && sy instanceof Packages.PackageSymbol) {
+			        String lhs = sy.getName();
 			        Packages.PackageSymbol pkg = (Packages.PackageSymbol)sy;
 			        Symbol mem = pkg.getMember(fieldName);
 			        if (mem != null)
 			            return associateType(ctx, mem.getType());
-			        ReportError.error(ctx, "package "+lhs+", unimplemented member: "+fieldName);
+			        errors.error(ctx, Diagnostic.Id.UNIMPLEMENTED_MEMBER, lhs, fieldName);
 			    } else
-				    ReportError.error(ctx, "dot operator applied to non-struct value");
+				    errors.error(ctx, Diagnostic.Id.NOT_A_STRUCT);
 			}
 		}
 		if (ctx.index() != null) {
@@ -546,7 +904,7 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 			if (typ instanceof Type.Slice)
 				return associateType(ctx,((Type.Slice)typ).getElementType());
 			if (typ != Type.unknownType)
-			    ReportError.error(ctx, "only an array or slice can be indexed");
+			    errors.error(ctx, Diagnostic.Id.NOT_INDEXABLE);
 		}
 		if (ctx.slice() != null) {
 			// it parses as taking a slice
@@ -559,19 +917,18 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 			// it parses as a function call
 			Type args = visit(ctx.arguments());
 			if (typ instanceof Type.Function) {
-				return associateType(ctx,TypeChecking.checkFunctionCall((Type.Function)typ,
+				return associateType(ctx,checker.checkFunctionCall((Type.Function)typ,
 				    ((Type.TypeList)args).getTypes(), ctx));
 			}
-			String fnpart = ctx.primaryExpr().getText();
-			Symbol fn = currentScope.resolve(fnpart);
+			Symbol fn = operandSymbol(ctx.primaryExpr());
 			if (fn != null && fn.getKind() == Symbol.Kind.TypeName) {
 				// handle the grammar ambiguity
 			    if (((Type.TypeList)args).getTypes().length != 1)
-			        ReportError.error(ctx, "type conversion requires one argument");
+			        errors.error(ctx, Diagnostic.Id.CONVERSION_ARGUMENTS);
 			    return associateType(ctx,typ);  // check for valid conversion will be in pass 3
 			}
 			if (typ != Type.unknownType)
-			    ReportError.error(ctx, "arguments can be passed only to a function");
+			    errors.error(ctx, Diagnostic.Id.NOT_A_FUNCTION);
 		}
 
 		return Type.unknownType;
@@ -582,7 +939,7 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 	@Override
 	public Type visitIndex(GooParser.IndexContext ctx) {
 	  Type ixtyp = visit(ctx.expression());
-		TypeChecking.checkAssignability(Predefined.intType, ixtyp, ctx);	// index must be an int
+		checker.checkAssignability(predef.intType, ixtyp, ctx);	// index must be an int
 		return associateType(ctx,ixtyp);
 	}
 
@@ -590,7 +947,7 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 	public Type visitSlice(GooParser.SliceContext ctx) {
 		List<GooParser.ExpressionContext> positions = ctx.expression();
 		for( GooParser.ExpressionContext pos : positions )
-			TypeChecking.checkAssignability(Predefined.intType, visit(pos), pos);
+			checker.checkAssignability(predef.intType, visit(pos), pos);
 		return Type.unknownType;
 	}
 
@@ -607,149 +964,117 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 		return associateType(ctx,Type.newTypeList(list));
 	}
 
-	// expression:   unaryExpr # UnExp ;
-  @Override
-   public Type visitUnExp(GooParser.UnExpContext ctx) {
-     return associateType(ctx, visit(ctx.unaryExpr()));
-   }
-
-	public long Calculate(BiFunction<Long, Long, Long> op, long op1, long op2)
-	{
-	  return op.apply(op1, op2);
-	}
-	public double Calculate(BiFunction<Double, Long, Double> op, double op1, long op2)
-  {
-    return op.apply(op1, op2);
-  }
-	public double Calculate(BiFunction<Long, Double, Double> op, long op1, double op2)
-  {
-    return op.apply(op1, op2);
-  }
-	public double Calculate(BiFunction<Double, Double, Double> op, double op1, double op2)
-  {
-    return op.apply(op1, op2);
-  }
-
+	// expression:   unaryExpr ( binaryOp unaryExpr )* ;
+	// The operators have been arranged into a tree by ExpressionParser;
+	// each node is a single operand or an operand, a binaryOp and an operand.
+	// A tree of operations is checked in postorder with an explicit stack,
+	// as a long chain such as a+b+c+... makes a very deep tree; the operands
+	// which are not operations are visited as usual.
 	@Override
-	public Type visitNumExp(GooParser.NumExpContext ctx) {
-		Type lhs = visit(ctx.expression(0));
-		Type rhs = visit(ctx.expression(1));
-		if((lhs instanceof Type.UntypedNumber) && (rhs instanceof Type.UntypedNumber)){
-		  Type.UntypedNumber left = (Type.UntypedNumber)lhs;
-		  Type.UntypedNumber right = (Type.UntypedNumber)rhs;
-		  Number val = null;
-		  if(ctx.addOp() != null){
-		    switch(ctx.addOp().getText()){
-		    case "+":
-		      val = Calculate((x,y) -> x+y, left.isInteger() ? left.getIntValue() : left.getDoubleValue(), right.isInteger() ? right.getIntValue() : right.getDoubleValue());
-		      break;
-		    case "-":
-          val = Calculate((x,y) -> x-y, left.isInteger() ? left.getIntValue() : left.getDoubleValue(), right.isInteger() ? right.getIntValue() : right.getDoubleValue());
-          break;
-		    case "|":
-		      if(left.isInteger() && right.isInteger()){
-		        val = Calculate((Long x,Long y) -> x|y, left.getIntValue(), right.getIntValue());
-		      }
-		      break;
-		    case "^":
-		      if(left.isInteger() && right.isInteger()){
-            val = Calculate((Long x,Long y) -> x^y, left.getIntValue(), right.getIntValue());
-          }
-		      break;
-		    }
-		  }
-		  if(ctx.mulOp() != null){
-		    switch(ctx.mulOp().getText()){
-		    case "*":
-		      val = Calculate((x,y) -> x*y, left.isInteger() ? left.getIntValue() : left.getDoubleValue(), right.isInteger() ? right.getIntValue() : right.getDoubleValue());
-          break;
-        case "/":
-          val = Calculate((x,y) -> x/y, left.isInteger() ? left.getIntValue() : left.getDoubleValue(), right.isInteger() ? right.getIntValue() : right.getDoubleValue());
-          break;
-        case "%":
-          val = Calculate((x,y) -> x%y, left.isInteger() ? left.getIntValue() : left.getDoubleValue(), right.isInteger() ? right.getIntValue() : right.getDoubleValue());
-          break;
-        case "<<":
-          if(left.isInteger() && right.isInteger() && right.getIntValue() >= 0){
-            val = Calculate((Long x,Long y) -> x<<y, left.getIntValue(), right.getIntValue());
-          }
-          break;
-        case ">>":
-          if(left.isInteger() && right.isInteger() && right.getIntValue() >= 0){
-            val = Calculate((Long x,Long y) -> x>>y, left.getIntValue(), right.getIntValue());
-          }
-          break;
-        case "&":
-          if(left.isInteger() && right.isInteger()){
-            val = Calculate((Long x,Long y) -> x&y, left.getIntValue(), right.getIntValue());
-          }
-          break;
-        case "&^":
-          if(left.isInteger() && right.isInteger()){
-            val = Calculate((Long x,Long y) -> x&(~y), left.getIntValue(), right.getIntValue());
-          }
-          break;
-		    }
-		  }
-		  if(val != null){
-		    Type untyped = Type.newUntypedNumber(val.toString());
-		    return associateType(ctx, untyped);
-		  }
+	public Type visitExpression(GooParser.ExpressionContext ctx) {
+		if (ExpressionParser.operator(ctx) == null) {
+			GooParser.UnaryExprContext opnd = ctx.unaryExpr(0);
+			Type typ = visit(opnd);
+			associateValue(ctx, lookupValue(opnd));
+			return associateType(ctx, typ);
+		}
+		ArrayList<GooParser.ExpressionContext> stack = new ArrayList<>();
+		stack.add(ctx);
+		ParseTree done = null;	// the operand or operation checked last
+		while( !stack.isEmpty() ) {
+			GooParser.ExpressionContext e = stack.get(stack.size()-1);
+			ParserRuleContext left = (ParserRuleContext)e.getChild(0);
+			ParserRuleContext right = (ParserRuleContext)e.getChild(2);
+			if (done != left && done != right) {	// the first time e is reached
+				if (isOperation(left)) {
+					stack.add((GooParser.ExpressionContext)left);
+					continue;
+				}
+				visit(left);
+				done = left;
+			}
+			if (done == left) {
+				if (isOperation(right)) {
+					stack.add((GooParser.ExpressionContext)right);
+					continue;
+				}
+				visit(right);
+			}
+			stack.remove(stack.size()-1);
+			checkOperation(e, ExpressionParser.operator(e), left, right);
+			done = e;
 		}
-		if (ctx.mulOp() != null)
-			return associateType(ctx,TypeChecking.checkBinOp(lhs, rhs, ctx.mulOp().getText(), ctx));
-		return associateType(ctx,TypeChecking.checkBinOp(lhs, rhs, ctx.addOp().getText(), ctx));
+		return lookupType(ctx);
 	}
 
-	@Override
-	public Type visitRelExp(GooParser.RelExpContext ctx) {
-		Type lhs = visit(ctx.expression(0));
-		Type rhs = visit(ctx.expression(1));
-		return associateType(ctx,TypeChecking.checkBinOp(lhs, rhs, ctx.relOp().getText(), ctx));
+	private static boolean isOperation(ParseTree t) {
+		return t instanceof GooParser.ExpressionContext
+			&& ExpressionParser.operator((GooParser.ExpressionContext)t) != null;
 	}
 
-	@Override
-	public Type visitBoolExp(GooParser.BoolExpContext ctx) {
-		Type lhs = visit(ctx.expression(0));
-		Type rhs = visit(ctx.expression(1));
-		TypeChecking.checkAssignability(Type.boolType,lhs,ctx);
-		TypeChecking.checkAssignability(Type.boolType,rhs,ctx);
-		return associateType(ctx,Type.boolType);
+	// Checks a binary operation whose operands have been checked, and
+	// computes its value if both operands are constants. When both operands
+	// are untyped numbers and so is the result, the result is another
+	// untyped number; otherwise the result type is found by the type checker.
+	private Type checkOperation(GooParser.ExpressionContext ctx, Token opTok,
+			ParserRuleContext left, ParserRuleContext right) {
+		Operator op = Operator.forToken(opTok.getType());
+		Type lhs = lookupType(left);
+		Type rhs = lookupType(right);
+		Constant x = lookupValue(left);
+		Constant y = lookupValue(right);
+		if (op == Operator.LAND || op == Operator.LOR) {
+			checker.checkAssignability(Type.boolType,lhs,ctx);
+			checker.checkAssignability(Type.boolType,rhs,ctx);
+			if (x != null && y != null)
+				associateValue(ctx, ConstantFolder.binary(op, x, y));
+			return associateType(ctx,Type.boolType);
+		}
+		Constant v = null;
+		if (x != null && y != null) {
+			if (ConstantFolder.isDivisionByZero(op, y)) {
+				errors.error(ctx, Diagnostic.Id.DIVISION_BY_ZERO);
+				return associateType(ctx, Type.unknownType);
+			}
+			v = ConstantFolder.binary(op, x, y);
+		}
+		if (lhs instanceof Type.UntypedNumber && rhs instanceof Type.UntypedNumber
+				&& v != null && v.isNumber()) {
+			associateValue(ctx, v);
+			return associateType(ctx, comp.constants.get(v));
+		}
+		Type typ = checker.checkBinOp(lhs, rhs, opTok, ctx);
+		if (typ != Type.unknownType)
+			associateValue(ctx, v);
+		return associateType(ctx, typ);
 	}
 
+	// binaryOp:   mulOp | addOp | relOp | '&&' | '||' ;
+
 	@Override
 	public Type visitUnaryExpr(GooParser.UnaryExprContext ctx) {
 		if (ctx.unaryOp() != null) {
 			Type opnd = visit(ctx.unaryExpr());
-			if(opnd instanceof Type.UntypedNumber){
-			  Type newType = null;
-			  switch(ctx.unaryOp().getText()){
-			  case "-":
-			    newType = Type.newUntypedNumber("-"+ctx.unaryExpr().getText());
-			    break;
-			  case "^":
-			    Type.UntypedNumber num = (Type.UntypedNumber)opnd;
-			    if(num.isInteger()){
-			      newType = Type.newUntypedNumber(Long.toString(~num.getIntValue()));
-			    }
-			    break;
-			  }
-			  if(newType != null){
-			    return associateType(ctx, newType);
-			  }
+			Token opTok = ctx.unaryOp().getStart();
+			Operator op = Operator.forToken(opTok.getType());
+			Constant x = lookupValue(ctx.unaryExpr());
+			Constant v = x == null || op == null ? null : ConstantFolder.unary(op, x);
+			if (opnd instanceof Type.UntypedNumber && v != null && v.isNumber()) {
+				// the result is another untyped constant
+				associateValue(ctx, v);
+				return associateType(ctx, comp.constants.get(v));
 			}
 
-      Symbol t = null;
-      if (ctx.unaryExpr() != null) {
-        t = currentScope.resolve(ctx.unaryExpr().getText());
-      } else {
-        t = null;
-      }
-			return associateType(ctx,TypeChecking.checkUnaryOp(opnd, ctx.unaryOp().getText(), ctx, t)); //ctx.unaryExpr().getText());
+			Symbol t = operandSymbol(ctx.unaryExpr());  // the variable for &
+			Type typ = checker.checkUnaryOp(opnd, opTok, ctx, t);
+			if (typ != Type.unknownType)
+				associateValue(ctx, v);
+			return associateType(ctx,typ);
 		}
-		return associateType(ctx,visit(ctx.primaryExpr()));
+		Type typ = visit(ctx.primaryExpr());
+		associateValue(ctx, lookupValue(ctx.primaryExpr()));
+		return associateType(ctx,typ);
 	}
-  // currentScope.resolve(opnd.getName())
 
 	// relOp:     '==' | '!=' | '<' | '<=' | '>' | '>=' ;
 	// addOp:     '+' | '-' | '|' | '^' ;
@@ -765,15 +1090,15 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 	        return associateType(ctx,typ); // we will check the legality of the conversion in pass 3
 	    // is it a function call, the ambiguity??
 	    if (typ instanceof Type.Function)
-	        return associateType(ctx,TypeChecking.checkFunctionCall((Type.Function)typ, new Type[]{arg}, ctx));
+	        return associateType(ctx,checker.checkFunctionCall((Type.Function)typ, new Type[]{arg}, ctx));
 	    if (typ == Type.unknownType)
 	    	return typ;
 	    // if the typ part is an identifier, we have an error because that identifier
 	    // is not a type name nor a function name
-	    String possibleId = ctx.type().getText();
-	    Symbol possibleSym = currentScope.resolve(possibleId);
-	    if (possibleSym != null) {
-	        ReportError.error(ctx, "unknown function or typename: "+possibleId);
+	    GooParser.TypeNameContext tn = ctx.type().typeName();
+	    String possibleId = tn == null ? null : names.name(tn.Identifier().getSymbol());
+	    if (possibleId != null && currentScope.resolve(possibleId) != null) {
+	        errors.error(ctx, Diagnostic.Id.UNKNOWN_CALLEE, possibleId);
 			return Type.unknownType;
 		}
 		// otherwise must be OK (a type but not a type name)
@@ -792,8 +1117,8 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 	@Override
 	public Type visitLabeledStmt(GooParser.LabeledStmtContext ctx) {
 		Token tok = ctx.label().Identifier().getSymbol();
-		Symbol lab = new LabelSymbol(tok, currentScope);
-		currentScope.define(lab);
+		Symbol lab = new LabelSymbol(tok, names.name(tok), currentScope);
+		define(lab);
 		return associateType(ctx,visit(ctx.statement()));
 	}
 
@@ -804,14 +1129,9 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 	@Override
 	public Type visitIncDecStmt(GooParser.IncDecStmtContext ctx) {
 		Type opnd = visit(ctx.expression());
-
-    Symbol t;
-    if (ctx.expression() != null) {
-      t = currentScope.resolve(ctx.expression().getText());
-    } else {
-      t = null;
-    }
-		return TypeChecking.checkUnaryOp(opnd, "++", ctx, t);	// check for being an L-value left for pass 3
+		Symbol t = operandSymbol(ctx.expression());
+		Token op = ((TerminalNode)ctx.getChild(1)).getSymbol();  // '++' or '--'
+		return checker.checkUnaryOp(opnd, op, ctx, t);	// check for being an L-value left for pass 3
 	}
 
 	@Override
@@ -820,13 +1140,13 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 		List<GooParser.ExpressionContext> right = ctx.expressionList(1).exl;
 		int len = left.size();
 		if (len != right.size()) {
-			ReportError.error(ctx, "assignment requires equal numbers of terms on left and right");
+			errors.error(ctx, Diagnostic.Id.ASSIGNMENT_COUNT);
 			if (len > right.size()) len = right.size();
 		}
 		for( int k=0; k<len; k++ ) {
 			Type ltyp = visit(left.get(k));
 			Type rtyp = visit(right.get(k));
-			TypeChecking.checkAssignability(ltyp, rtyp, ctx);
+			checker.checkAssignability(ltyp, rtyp, ctx);
 		}
 		return Type.voidType;
 	}
@@ -837,7 +1157,7 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 	public Type visitIfStmt(GooParser.IfStmtContext ctx) {
 		if (ctx.simpleStmt() != null) visit(ctx.simpleStmt());
 		Type typ = visit(ctx.expression());
-		TypeChecking.checkAssignability(Type.boolType, typ, ctx);
+		checker.checkAssignability(Type.boolType, typ, ctx);
 		visit(ctx.block());
 		return visit(ctx.elsePart());
 	}
@@ -854,7 +1174,7 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 	@Override
 	public Type visitCondition(GooParser.ConditionContext ctx) {
 		Type typ = visit(ctx.expression());
-		TypeChecking.checkAssignability(Predefined.boolType, typ, ctx);
+		checker.checkAssignability(predef.boolType, typ, ctx);
 		return associateType(ctx,Type.boolType);
 	}
 
@@ -872,9 +1192,9 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 			Type[] retTypes = typ.getTypes();
 			Type[] resultTypes = ((Type.Function)(fsy.getType())).getResults();
 			if (retTypes.length > resultTypes.length)
-				ReportError.error(ctx, "too many results returned from function");
+				errors.error(ctx, Diagnostic.Id.TOO_MANY_RESULTS);
 			for( int k=0; k<resultTypes.length; k++ )
-				TypeChecking.checkAssignability(resultTypes[k], retTypes[k], ctx);
+				checker.checkAssignability(resultTypes[k], retTypes[k], ctx);
 		}
 		return Type.voidType;
 	}
@@ -887,16 +1207,105 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 
     @Override
 	public Type visitSourceFile(GooParser.SourceFileContext ctx) {
-	    if (dumpSymTab || Symbol.tracing)
-	        System.out.println("\n=== Pass 2 Output ===\n");
+	    if (comp.dumpSymTab || comp.tracing)
+	        comp.out.println("\n=== Pass 2 Output ===\n");
+		// sized for the whole tree: the maps are shared by the tasks which
+		// check function bodies in parallel, so they must never grow
+		types = new NodeMap<Type>(ctx.getNodeCount());
+		values = new NodeMap<Constant>(ctx.getNodeCount());
+		uses = new NodeMap<Symbol>(ctx.getNodeCount());
+		resolved = new NodeMap<Boolean>(ctx.getNodeCount());
 		lookupScope(ctx);
-        visitChildren(ctx);
-		if (dumpSymTab)
-			currentScope.dumpScope();
+		packageScope = currentScope;
+		// the package level declarations, in order except where a name is used first
+		// (for a function, just its signature)
+		for( ParserRuleContext decl : declarations )
+			resolveDeclaration(decl);
+		// declarations which used names whose types were not yet known
+		for( ParserRuleContext decl : worklist )
+			checkDeclaration(decl);
+		declarationsDone = true;
+		// and finally the function bodies
+		ArrayList<ParserRuleContext> functions = new ArrayList<ParserRuleContext>();
+		for( ParserRuleContext decl : declarations )
+			if (decl instanceof GooParser.FunctionDeclContext)
+				functions.add(decl);
+		checkBodies(functions);
+		errors.flush();
+		if (comp.dumpSymTab)
+			currentScope.dumpScope(comp.out);
 		currentScope = currentScope.getEnclosingScope();
 		return null;
 	}
 
+	// Fewer functions than this are checked in the current thread
+	static final int PARALLEL_THRESHOLD = 4;
+
+	// Checks the function bodies, in parallel if there are enough of them
+	private void checkBodies( List<ParserRuleContext> functions ) {
+		if (functions.size() < PARALLEL_THRESHOLD) {
+			for( ParserRuleContext f : functions )
+				visit(f);
+			return;
+		}
+		BodyTask task = new BodyTask(this, functions, 0, functions.size());
+		ForkJoinPool pool = comp.getPool();
+		if (ForkJoinTask.getPool() == pool)
+			task.invoke();	// already running on the pool (batch mode)
+		else
+			pool.invoke(task);
+		// copy the messages in source order; a task only has output of its
+		// own if it flushed its messages (for a trace or a dump)
+		for( int i=0; i<functions.size(); i++ ) {
+			if (task.outputs[i].size() > 0) {
+				errors.flush();
+				out.print(task.outputs[i].toString());
+			}
+			errors.addAll(task.reports[i]);
+		}
+	}
+
+	// Checks the bodies of functions[lo..hi-1], splitting the range in
+	// halves until there is just one function. The messages for function
+	// i are left in reports[i], and any traces and dumps in outputs[i].
+	static class BodyTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		final SymTabVisitor2 parent;
+		final List<ParserRuleContext> functions;
+		final int lo, hi;
+		final ByteArrayOutputStream[] outputs;
+		final ReportError[] reports;
+
+		BodyTask( SymTabVisitor2 parent, List<ParserRuleContext> functions, int lo, int hi ) {
+			this(parent, functions, lo, hi, new ByteArrayOutputStream[functions.size()],
+				new ReportError[functions.size()]);
+		}
+
+		private BodyTask( SymTabVisitor2 parent, List<ParserRuleContext> functions, int lo, int hi,
+				ByteArrayOutputStream[] outputs, ReportError[] reports ) {
+			this.parent = parent;
+			this.functions = functions;
+			this.lo = lo;  this.hi = hi;
+			this.outputs = outputs;
+			this.reports = reports;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > 1) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new BodyTask(parent, functions, lo, mid, outputs, reports),
+					new BodyTask(parent, functions, mid, hi, outputs, reports));
+				return;
+			}
+			outputs[lo] = new ByteArrayOutputStream();
+			PrintStream ps = new PrintStream(outputs[lo]);
+			reports[lo] = new ReportError(ps, parent.errors);
+			new SymTabVisitor2(parent, reports[lo], ps).visit(functions.get(lo));
+			ps.flush();
+		}
+	}
+
 	// packageClause:   PACKAGE packageName ;
 
 	// packageName:   Identifier ;
@@ -905,7 +1314,7 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 
 	// importDecl:   IMPORT importSpec | IMPORT '(' importSpecList ')' ;
 
-	// importSpecList:  /* empty */ | (importSpec ';')* importSpec optSemi ;
+	// importSpecList:  /* empty */ | importSpec (';' importSpec)* ';'? ;
 
 	// importSpec:   importPath ;
 
@@ -914,6 +1323,63 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 
 // ********************** utility methods ********************************
 
+	// The value of a string or rune literal. Only literals without escape
+	// sequences are evaluated; for others the value is left unknown.
+	private static Constant literalValue( String lit ) {
+		String body = lit.substring(1, lit.length()-1);
+		if (lit.charAt(0) == '`')
+			return Constant.ofString(body);
+		if (body.indexOf('\\') >= 0)
+			return null;
+		if (lit.charAt(0) == '"')
+			return Constant.ofString(body);
+		if (body.codePointCount(0, body.length()) != 1)
+			return null;
+		return Constant.ofInt(body.codePointAt(0));
+	}
+
+	// Checks a package level declaration if it has not been checked already.
+	// If it is being checked already, the reference to it comes from inside
+	// (a cycle); the declarations on the cycle are then checked again after
+	// all the other declarations, innermost first.
+	private void resolveDeclaration( ParserRuleContext decl ) {
+		if (resolved.get(decl) != null) return;
+		int k = resolving.indexOf(decl);
+		if (k >= 0) {
+			// only a type may refer to itself; the signatures of functions
+			// do not depend on their bodies
+			if (!(decl instanceof GooParser.TypeSpecContext) && !worklist.contains(decl))
+				errors.error(decl, Diagnostic.Id.INITIALIZATION_CYCLE);
+			for( int i=resolving.size()-1; i>=k; i-- )
+				worklist.add(resolving.get(i));
+			return;
+		}
+		resolving.add(decl);
+		checkDeclaration(decl);
+		resolving.remove(resolving.size()-1);
+		resolved.put(decl, Boolean.TRUE);
+	}
+
+	// Visits a package level declaration (only the signature of a function),
+	// saving the state of whatever was being checked when it was needed
+	private void checkDeclaration( ParserRuleContext decl ) {
+		Scope savedScope = currentScope;
+		LinkedList<Type> savedParams = currentSignatureParams;
+		LinkedList<Type> savedResult = currentSignatureResult;
+		int savedSize = arraySize;
+		currentScope = packageScope;
+		currentSignatureParams = new LinkedList<Type>();
+		currentSignatureResult = new LinkedList<Type>();
+		if (decl instanceof GooParser.FunctionDeclContext)
+			visitFunctionSignature((GooParser.FunctionDeclContext)decl);
+		else
+			visit(decl);
+		currentScope = savedScope;
+		currentSignatureParams = savedParams;
+		currentSignatureResult = savedResult;
+		arraySize = savedSize;
+	}
+
 	private Type matchNamesToTypes( Type typ, List<Token> ids, Symbol.Kind kind ) {
 		Type[] typeList = null;
 		if (typ == null)
@@ -921,7 +1387,7 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 		if (typ instanceof Type.TypeList) {
 			typeList = ((Type.TypeList)typ).getTypes();
 			if (typeList.length != ids.size()) {
-				ReportError.error("number of initializers does not match number of identifiers");
+				errors.error(Diagnostic.Id.INITIALIZER_COUNT);
 				typeList = null;
 				typ = Type.unknownType;
 			}
@@ -952,27 +1418,27 @@ public class SymTabVisitor2 extends GooBaseVisitor<Type> {
 	// This function returns the value of an expression used where
 	// an integer constant is needed -- i.e. an array size.
 	// It requires type checking to have previously been performed
-	// on the expression.
-	// Only explicit constants and named constants with known integer
-	// values are supported as the expressions. (Go allows expressions
-	// with constant values.)
+	// on the expression, which also computes its value if the
+	// expression is constant.
 	private int getIntValue(ParserRuleContext ctx) {
 		Type typ = lookupType(ctx);
-		if (typ != null && typ instanceof Type.UntypedNumber) {
-			Type.UntypedNumber utyp = (Type.UntypedNumber)typ;
-			if (utyp.isInteger()) {
-				long v = utyp.getIntValue();
-				if (v < 0 || v > Integer.MAX_VALUE) {
-					ReportError.error(ctx, "invalid array size: "+v);
-					return -1;
-				}
-				return (int)v;
+		Constant val = lookupValue(ctx);
+		if (val == null && typ instanceof Type.UntypedNumber)
+			val = Constant.of((Type.UntypedNumber)typ);
+		if (val != null && val.isInteger()) {
+			if (val.getKind() == Constant.Kind.BigInt || val.getIntValue() < 0
+					|| val.getIntValue() > Integer.MAX_VALUE) {
+				errors.error(ctx, Diagnostic.Id.INVALID_ARRAY_SIZE, val);
+				return -1;
 			}
-			ReportError.error(ctx, "array size is not an integer");
+			return (int)val.getIntValue();
+		}
+		if (val != null && val.isNumber()) {
+			errors.error(ctx, Diagnostic.Id.ARRAY_SIZE_NOT_INTEGER);
 			return -1;
 		}
 		if (typ != null && typ != Type.unknownType)
-			ReportError.error(ctx, "unimplemented feature: expressions as array sizes");
+			errors.error(ctx, Diagnostic.Id.ARRAY_SIZE_NOT_CONSTANT);
 		return -1;
 	}
 }
@@ -6,14 +6,17 @@ public class Symbol { // A generic programming language symbol
 
     enum Kind { Unknown, Variable, Function, Formal, Field,
     			Constant, TypeName, Package, Label }   // CHANGED
-    
-    static public boolean tracing = false;
 
     String name;
     Kind kind;
     Type type;
     Scope scope;      // the scope containing the definition
     int line;		  // line number where declared
+    Constant constValue;  // value of a constant, if known
+    int depth = -1;   // block nesting level within the function: 0 for a formal
+                      // parameter, -1 for a name declared outside any function
+    int slot = -1;    // index in the function's frame, -1 outside any function
+    ParserRuleContext declaration;  // the package level declaration, see pass 1
 
     public Symbol(String name) {
         this.name = name;
@@ -40,6 +43,15 @@ public class Symbol { // A generic programming language symbol
         line = id.getLine();
     }
 
+	// as above, with the name of id as pooled by the compilation's Names
+    public Symbol(Token id, String name, Kind kind, Type type, Scope scope) {
+        this.name = name;
+        this.kind = kind;
+        this.type = type;
+        this.scope = scope;
+        line = id.getLine();
+    }
+
 	public Symbol() { }
 
     public String getName() { return name; }
@@ -54,6 +66,18 @@ public class Symbol { // A generic programming language symbol
     public Scope getScope() { return scope; }
     public void setScope(Scope s) { scope = s; }
     
+    public Constant getConstValue() { return constValue; }
+    public void setConstValue(Constant v) { constValue = v; }
+
+    public int getDepth() { return depth; }
+    public void setDepth(int d) { depth = d; }
+
+    public int getSlot() { return slot; }
+    public void setSlot(int s) { slot = s; }
+
+    public ParserRuleContext getDeclaration() { return declaration; }
+    public void setDeclaration(ParserRuleContext d) { declaration = d; }
+
     public int getLineNumber() { return line; }
     public void setLineNumber(int ln) { line = ln; }
 
@@ -21,6 +21,8 @@
 // All other types are described by instances of nested subclasses of Type.
 //
 
+import java.io.PrintStream;
+import java.math.BigInteger;
 import java.util.*;
 
 public class Type implements Cloneable {
@@ -36,10 +38,23 @@ public class Type implements Cloneable {
 
     public static final Type nilType = newPointerType(anyType);
 
+    // the instances above are shared by all compilations
+    static {
+        for( Type t : new Type[]{ unknownType, stringType, boolType, labelType,
+                    voidType, anyType, variadicAnyType, apsType, nilType } )
+            t.setPredeclared(true);
+        unknownType.kind = TypeKind.Unknown;
+        stringType.kind = TypeKind.String;
+        boolType.kind = TypeKind.Bool;
+    }
+
 	// instance fields
     String name;
+    TypeKind kind = TypeKind.Other;
     boolean complete = false;	// false => some component is unknown
     boolean namedType = false;
+    boolean predeclared = false;	// true => one of the shared predefined types
+    boolean interned = false;	// true => the unique instance in a TypeTable
 
 	// Constructors -- they are PRIVATE
     private Type() { name = "???"; }
@@ -54,27 +69,52 @@ public class Type implements Cloneable {
     public String getName() { return name; }
     public void setName(String n) { name = n; }
 
+	public TypeKind getKind() { return kind; }
+
 	public boolean isComplete() { return complete; }
 	public void setComplete(boolean b) { complete = b; }
 
 	public boolean isNamedType() { return namedType; }
 	public void setNamedType(boolean b) { namedType = b; }
 
+	public boolean isPredeclared() { return predeclared; }
+	public void setPredeclared(boolean b) { predeclared = b; }
+
+	public boolean isInterned() { return interned; }
+	public void setInterned(boolean b) { interned = b; }
+
+	// true if this type is identical to another type only when they are the
+	// same object: the predefined types, named types (there is one instance
+	// per declaration) and the types obtained from a TypeTable
+	public boolean isCanonical() { return predeclared || namedType || interned; }
+
 	public Type makeNamedCopy(String name) {
 		Type r = this;
 		// each named type has to be a distinct type which
 		// compares as incompatible with the underlying type
-		// ==> make new copy if underlying type is already named
-		if (namedType && !name.equals(getName()))
+		// ==> make new copy if underlying type is already named;
+		// the predefined and interned types are shared so they are never renamed
+		if (predeclared || interned || (namedType && !name.equals(getName())))
 			r = (Type)this.clone();
 		r.setName(name);
 		r.setNamedType(true);
 		return r;
 	}
 
+	// The types being converted to strings by the current thread; used to
+	// stop infinite recursion on recursive types. (A flag in each type
+	// would not do, the predefined types are shared between threads.)
+	private static final ThreadLocal<Set<Type>> printing =
+		ThreadLocal.withInitial(() -> Collections.newSetFromMap(new IdentityHashMap<Type,Boolean>()));
+
+	protected boolean startPrinting() { return printing.get().add(this); }
+	protected void endPrinting() { printing.get().remove(this); }
+
 	// clone here and in the subclasses makes a shallow copy
 	protected Object clone() {
-		return new Type(this.name, this.complete);
+		Type r = new Type(this.name, this.complete);
+		r.kind = kind;
+		return r;
 	}
 
 	@Override
@@ -96,14 +136,17 @@ public class Type implements Cloneable {
 		return result;
 	}
 
-	static HashMap<String,Type.UntypedNumber> unTypNumCache =
-						new HashMap<String,Type.UntypedNumber>();
+	// see UntypedConstants for the cached versions
+	public static Type.UntypedNumber newUntypedNumber(long v) {
+		return unknownType.new UntypedNumber(v);
+	}
 
-	// s is the text of the numeric constant (int or float)
-	public static Type.UntypedNumber newUntypedNumber(String s) {
-		Type.UntypedNumber entry = unTypNumCache.get(s);
-		if (entry != null) return entry;  // reuse existing instance
-		return unknownType.new UntypedNumber(s);
+	public static Type.UntypedNumber newUntypedNumber(double v) {
+		return unknownType.new UntypedNumber(v);
+	}
+
+	public static Type.UntypedNumber newUntypedNumber(BigInteger v) {
+		return unknownType.new UntypedNumber(v);
 	}
 
 	public static Type.Array newArrayType(Type elemType) {
@@ -162,6 +205,7 @@ public class Type implements Cloneable {
         public Int( int size ) {
             this.size = size;
             name = "int"+size;
+            kind = TypeKind.Int;
             setComplete(true);
         }
 
@@ -179,6 +223,7 @@ public class Type implements Cloneable {
         public Uint( int size ) {
             this.size = size;
             name = "uint"+size;
+            kind = TypeKind.Uint;
             setComplete(true);
         }
 
@@ -190,47 +235,55 @@ public class Type implements Cloneable {
         }
     }
 
+	// The type of an untyped numeric constant; it also carries the value.
+	// Instances are immutable and are shared (see UntypedConstants).
 	public class UntypedNumber extends Type {
-		private String text;
-		private long iValue;
-		private double dValue;
-		private boolean isInt;
-        private boolean isPossibleDouble; // If original text was an int or was actually a double
-
-		public UntypedNumber( String num ) {
-			text = num;  name = "("+num+")";
-			checkForm();
+		private final long iValue;
+		private final double dValue;
+		private final boolean isInt;
+		private final BigInteger bigValue;  // only for integers too big for a long
+
+		public UntypedNumber( long v ) {
+			iValue = v;  dValue = v;  isInt = true;  bigValue = null;
+			name = "("+v+")";
+			kind = TypeKind.UntypedInt;
+		}
+
+		public UntypedNumber( BigInteger v ) {
+			iValue = v.longValue();  dValue = v.doubleValue();  isInt = true;
+			bigValue = v;
+			name = "("+v+")";
+			kind = TypeKind.UntypedInt;
+		}
+
+		// a floating point value with no fractional part is kept as an integer
+		public UntypedNumber( double v ) {
+			long iv = (long)v;
+			isInt = (iv == v && !Double.isInfinite(v));
+			iValue = isInt ? iv : 0;
+			dValue = v;
+			bigValue = null;
+			name = isInt ? "("+iv+")" : "("+v+")";
+			kind = isInt ? TypeKind.UntypedInt : TypeKind.UntypedFloat;
 		}
 
 		public boolean isInteger() { return isInt; }
 
-        // Was the incoming text "2.0" or "2"
-        public boolean isPossibleDouble() { return isPossibleDouble; }
+		// an integer which does not fit in a long
+		public boolean isBig() { return bigValue != null; }
+
+		public BigInteger getBigValue() {
+			return bigValue != null ? bigValue : BigInteger.valueOf(iValue);
+		}
 
 		public long getIntValue() {
-			assert isInt; return iValue;
+			assert isInt && bigValue == null; return iValue;
 		}
 
 		public double getDoubleValue() {
 			assert !isInt; return dValue;
 		}
 
-		private void checkForm() {
-			Double dval;
-			try {
-				dval = new Double(text);
-				iValue = dval.longValue();
-				isInt = (iValue*1.0 == dval);
-                isPossibleDouble = text.contains(".");
-                if (!isInt) dValue = dval;
-			} catch(NumberFormatException e) {
-				ReportError.error("bad number: "+text);
-				iValue = 0;
-				text = "0";
-				isInt = true;
-			}
-		}
-
         @Override
         protected Object clone() {
         	return this;  // should never actually clone this type!
@@ -243,6 +296,7 @@ public class Type implements Cloneable {
         public Flt( int size ) {
             this.size = size;
             name = "float"+size;
+            kind = TypeKind.Float;
             setComplete(true);
         }
 
@@ -257,11 +311,11 @@ public class Type implements Cloneable {
     public class Array extends Type {
         private Type elementType;
         private int size;
-    	boolean recursionStop = false; // prevent infinite loops in toString()
 
         public Array( Type elementType ) {
             this.elementType = elementType;
             name = "[..]"; size = -1;
+            kind = TypeKind.Array;
             setComplete(elementType.isComplete());
         }
 
@@ -273,10 +327,9 @@ public class Type implements Cloneable {
 
         @Override
         public String toString() {
-        	if (recursionStop) return getName();
-        	recursionStop = true;
+        	if (!startPrinting()) return getName();
             String r = elementType.toString()+"["+size+"]";
-            recursionStop = false;
+            endPrinting();
             return r;
         }
 
@@ -290,11 +343,11 @@ public class Type implements Cloneable {
 
     public class Slice extends Type {
         private Type elementType;
-    	boolean recursionStop = false; // prevent infinite loops in toString()
 
         public Slice( Type elementType ) {
             this.elementType = elementType;
             name = "[]";
+            kind = TypeKind.Slice;
             setComplete(elementType.isComplete());
         }
 
@@ -303,10 +356,9 @@ public class Type implements Cloneable {
 
         @Override
         public String toString() {
-        	if (recursionStop) return getName();
-        	recursionStop = true;
+        	if (!startPrinting()) return getName();
             String r = elementType.toString()+"[]";
-            recursionStop = false;
+            endPrinting();
             return r;
         }
 
@@ -318,11 +370,11 @@ public class Type implements Cloneable {
 
     public class Pointer extends Type {
         private Type baseType;
-    	boolean recursionStop = false; // prevent infinite loops in toString()
 
         public Pointer( Type baseType ) {
             this.baseType = baseType;
             name = "*";
+            kind = TypeKind.Pointer;
             setComplete(baseType.isComplete());
         }
 
@@ -331,16 +383,15 @@ public class Type implements Cloneable {
 
         @Override
         public String toString() {
-        	if (recursionStop) return getName();
-        	recursionStop = true;
+        	if (!startPrinting()) return getName();
             String r = "*"+baseType.toString();
-            recursionStop = false;
+            endPrinting();
             return r;
         }
 
         @Override
         protected Object clone() {
-        	return newSliceType(baseType);
+        	return newPointerType(baseType);
         }
     }
 
@@ -352,11 +403,13 @@ public class Type implements Cloneable {
 
 		public TypeList( LinkedList<Type> types ) {
 			this.types = types.toArray(new Type[0]);
+			kind = TypeKind.TypeList;
 			setComplete();
 		}
 
 		public TypeList( Type[] types ) {
-			this.types = (Type[])types.clone();
+			this.types = types.clone();
+			kind = TypeKind.TypeList;
 			setComplete();
 		}
 
@@ -398,12 +451,14 @@ public class Type implements Cloneable {
 		public Function( LinkedList<Type> parameters, LinkedList<Type> results ) {
 			this.parameters = parameters.toArray(new Type[0]);   // These stupid API calls are a consequence of
 			this.results = results.toArray(new Type[0]);  // a brain-damaged implementation of generics in Java
+			kind = TypeKind.Function;
 			setComplete();
 		}
 
 		public Function( Type[] parameters, Type[] results ) {
-			this.parameters = (Type[])parameters.clone();
-			this.results = (Type[])results.clone();
+			this.parameters = parameters.clone();
+			this.results = results.clone();
+			kind = TypeKind.Function;
 			setComplete();
 		}
 
@@ -457,20 +512,19 @@ public class Type implements Cloneable {
 	public class Struct extends Type implements Scope {
 		LinkedHashMap<String, Symbol> fields = new LinkedHashMap<String, Symbol>();
 		Scope containingScope;
-    	boolean recursionStop = false; // prevent infinite loops in toString()
 
 		public Struct(Scope s) {
 			name = "struct";
+			kind = TypeKind.Struct;
 			containingScope = s;
 		}
 
 		@Override
 		public String toString() {
-			if (recursionStop)
+			if (!startPrinting())
 				return getName();
-			recursionStop = true;
 			String result = "struct{ "+fields.values()+" }";
-			recursionStop = false;
+			endPrinting();
 			return result;
 		}
 
@@ -483,15 +537,12 @@ public class Type implements Cloneable {
 		public LinkedHashMap<String, Symbol> getFields() { return fields; }
 		public void setFields(LinkedHashMap<String, Symbol> f) { fields = f; }
 
-	    public void define(Symbol sym) {
-	    	if (resolveInCurrent(sym.name) != null) {
-	    		ReportError.error(sym.getLineNumber(), 0,
-	    				"Duplicate declaration of  "+sym.name);
-	    		return;
-	    	}
+	    public boolean define(Symbol sym) {
+	    	if (resolveInCurrent(sym.name) != null)
+	    		return false;
 			fields.put(sym.name, sym);
 			sym.setScope(this); // track the scope in each symbol
-			// if (tracing) System.out.println("SY: Defined field: "+sym.name);
+			return true;
 	    }
 
 		public Symbol resolveInCurrent(String name) {
@@ -509,12 +560,12 @@ public class Type implements Cloneable {
 			return null; // not found
 	    }
 
-	    public void dumpScope() {
-			System.out.println(getScopeName() + " {");
+	    public void dumpScope(PrintStream out) {
+			out.println(getScopeName() + " {");
 			for( Symbol sy : fields.values() ) {
-				System.out.println("   "+sy.toString());
+				out.println("   "+sy.toString());
 			}
-			System.out.println("}\n");
+			out.println("}\n");
 	    }
 
 	    @Override
@@ -1,21 +1,75 @@
 // TypeChecking.java
 //
+// The checking methods report errors through the ReportError instance of
+// the compilation they were created for; the type comparison methods do
+// not report anything and are static, except identical and the structural
+// part of checkAssignability, which remember their answers in the
+// compilation's TypePairs.
 
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.tree.*;
 import java.util.*;
-import java.lang.Class;
 
 public class TypeChecking {
+	final ReportError errors;
+	final TypeTable types;
+	final TypePairs pairs;
+
+	public TypeChecking( Compilation comp ) {
+		this(comp, comp.errors);
+	}
+
+	// reports errors through errors instead (see SymTabVisitor2.BodyTask)
+	public TypeChecking( Compilation comp, ReportError errors ) {
+		this.errors = errors;
+		types = comp.types;
+		pairs = comp.typePairs;
+	}
 
 	// Checks whether a value of type srcTyp can be assigned to or compared with
 	// a value/variable of type destType; argument ctx is used only for line number info
+	// The elements of a composite literal are checked one at a time instead
+	// (see SymTabVisitor2.checkLiteralValue).
+  	public boolean checkAssignability(Type destTyp, Type srcTyp, ParserRuleContext ctx) {
+		if (isAssignable(destTyp, srcTyp) || sameUnderlying(destTyp, srcTyp)) return true;
+		// an untyped constant which does not fit has never been reported
+		if (!(srcTyp instanceof Type.UntypedNumber))
+			errors.error(ctx, Diagnostic.Id.INCOMPATIBLE, srcTyp, destTyp);
+		return false;
+	}
+
+	// Whether the types have identical underlying types and at least one of
+	// them is unnamed, which also makes a value assignable in Go. Only the
+	// struct, array, slice and pointer types are compared; the answers are
+	// remembered in the compilation's TypePairs.
+	private boolean sameUnderlying( Type destTyp, Type srcTyp ) {
+		if (!isComposite(destTyp) || destTyp.getClass() != srcTyp.getClass())
+			return false;
+		if (destTyp.isNamedType()) {
+			if (srcTyp.isNamedType()) return false;
+		} else if (!srcTyp.isNamedType() && destTyp.isCanonical() && srcTyp.isCanonical())
+			return false;	// they would be the same object
+		Boolean known = pairs.getAssignable(destTyp, srcTyp);
+		if (known != null) return known;
+		boolean result = sameStructure(destTyp, srcTyp, pairs);
+		if (destTyp.isComplete() && srcTyp.isComplete())
+			pairs.putAssignable(destTyp, srcTyp, result);
+		return result;
+	}
+
+	private static boolean isComposite( Type t ) {
+		return t instanceof Type.Struct || t instanceof Type.Array
+			|| t instanceof Type.Slice || t instanceof Type.Pointer;
+	}
+
+	// Whether a value of type srcTyp can be assigned to or compared with
+	// a value/variable of type destType
 	// Assignability is defined in the Go specification:
 	//   https://golang.org/ref/spec#Assignability
 	// This code is incomplete because it does not handle assignment of nil to pointer variables,
 	// and it should handle multiple assignment.
 	// Note that this method should make use of the identicalTypes method defined below.
-  	public static boolean checkAssignability(Type destTyp, Type srcTyp, ParserRuleContext ctx) {
+	public static boolean isAssignable(Type destTyp, Type srcTyp) {
 		// handle the obvious case!
 		if (destTyp == srcTyp) return true;
 		// avoid error messages when type is unknown, allow arbitrary dest types
@@ -39,48 +93,10 @@ public class TypeChecking {
 
     // Test cast of nil to pointer
 
-
-
-		// handle initialization of an array or slice
-		// Note: this code should be expanded to also handle the destination
-		// being a TypeList too ... that's needed for multiple assignment as in
-		//      str, x = "abc", 26
-		if (srcTyp instanceof Type.TypeList) {
-			if (destTyp instanceof Type.Array || destTyp instanceof Type.Slice) {
-				// check element types
-				Type et = destTyp instanceof Type.Array?
-						((Type.Array)destTyp).getElementType() :
-						((Type.Slice)destTyp).getElementType() ;
-				for( Type t : ((Type.TypeList)srcTyp).getTypes() ) {
-					if (!checkAssignability(et,t,ctx)) return false;
-				}
-				return true;
-			}
-
-      // Handle Structs
-      if (destTyp instanceof Type.Struct) {
-        // check element types
-        LinkedList<Type> types = new LinkedList<Type>();
-        for (Map.Entry<String, Symbol> entry : ((Type.Struct)destTyp).getFields().entrySet()) {
-          types.add(entry.getValue().type);
-        }
-        int cnt = 0;
-        for( Type t : ((Type.TypeList)srcTyp).getTypes() ) {
-          if (!checkAssignability(types.get(cnt), t, ctx)) {
-            return false;
-          }
-          cnt += 1;
-        }
-        return true;
-      }
-		}
-
     // Pointers
     if (srcTyp instanceof Type.Pointer) {
-      // Allow pointer <- nil assignment
-      if (srcTyp.toString() == "*(any)") {
-        return true;
-      }
+      // Allow pointer <- nil assignment: nil is a pointer too, so the rule
+      // below covers it (the test here used to print the whole type)
 
       // Allow pointer -> pointer assingment
       if (destTyp instanceof Type.Pointer) {
@@ -88,19 +104,18 @@ public class TypeChecking {
       }
     }
 
-		ReportError.error(ctx, "type "+srcTyp.toString()+" is incompatible with "+destTyp.toString());
 		return false;
 	}
 
 	// Checks if the function with signature fntyp can be called with the argument
 	// types actualTypes. The result is the function result type.
 	// This code is believed to be complete!
-    public static Type checkFunctionCall( Type.Function fntyp, Type[] actualTypes, ParserRuleContext ctx ) {
+    public Type checkFunctionCall( Type.Function fntyp, Type[] actualTypes, ParserRuleContext ctx ) {
         Type[] formalTypes = fntyp.getParameters();
         int i = 0;
         for( int k = 0; k<actualTypes.length; k++ ) {
             if (i >= formalTypes.length) {
-                ReportError.error(ctx, "too many arguments in function call");
+                errors.error(ctx, Diagnostic.Id.TOO_MANY_ARGUMENTS);
                 break;
             }
             if (formalTypes[i] == Type.variadicAnyType)
@@ -109,7 +124,7 @@ public class TypeChecking {
             i++;
         }
         if (actualTypes.length < formalTypes.length && formalTypes[i] != Type.variadicAnyType)
-            ReportError.error(ctx, "too few arguments in function call");
+            errors.error(ctx, Diagnostic.Id.TOO_FEW_ARGUMENTS);
 		Type[] restyp = fntyp.getResults();
 		if (restyp.length == 0) return Type.voidType;
 		assert restyp[0] != null;
@@ -125,44 +140,42 @@ public class TypeChecking {
  		if (a instanceof Type.Array) {
  			Type.Array aa = (Type.Array)a;
  			Type.Array bb = (Type.Array)b;
- 			return aa.getElementType() == bb.getElementType();
+ 			return aa.getSize() == bb.getSize() &&
+ 				identicalTypes(aa.getElementType(), bb.getElementType());
  		}
  		if (a instanceof Type.Slice) {
  			Type.Slice aa = (Type.Slice)a;
  			Type.Slice bb = (Type.Slice)b;
- 			return aa.getElementType() == bb.getElementType();
- 		}
- 		if (a instanceof Type.Pointer) {
- 			Type.Pointer aa = (Type.Pointer)a;
- 			Type.Pointer bb = (Type.Pointer)b;
- 			return aa.getBaseType() == bb.getBaseType();
+ 			return identicalTypes(aa.getElementType(), bb.getElementType());
  		}
  		if (a instanceof Type.Pointer) {
  			Type.Pointer aa = (Type.Pointer)a;
  			Type.Pointer bb = (Type.Pointer)b;
- 			return aa.getBaseType() == bb.getBaseType();
+ 			return identicalTypes(aa.getBaseType(), bb.getBaseType());
  		}
  		// does that cover all the cases?
  		return false;
  	}
 
-  // Method for doing stuff.
-  public static Type GetUnderlyingType(Type x) {
-    if (x instanceof Type.Pointer) {
-      return ((Type.Pointer)x).getBaseType();
-    }
-    if (x instanceof Type.Slice) {
-      return ((Type.Slice)x).getElementType();
-    }
-    if (x instanceof Type.Array) {
-      return ((Type.Array)x).getElementType();
-    }
-    return x;
-  }
-
  	// This tests for Type Identity as described in the Go specification:
  	//    https://golang.org/ref/spec#Type_identity
  	public static boolean identicalTypes( Type a, Type b ) {
+ 		return identical(a, b, null);
+ 	}
+
+ 	// As identicalTypes, but the answers for types which have to be compared
+ 	// structurally are remembered for the rest of the compilation
+ 	public boolean identical( Type a, Type b ) {
+ 		return identical(a, b, pairs);
+ 	}
+
+ 	// The comparison; the answers are remembered in memo if it is not null.
+ 	// A recursive type always refers to itself through a named type, and
+ 	// named types are compared by name, so the recursion ends.
+ 	private static boolean identical( Type a, Type b, TypePairs memo ) {
+ 		// canonical types are identical only to themselves (see TypeTable)
+ 		if (a == b) return true;
+ 		if (a.isCanonical() && b.isCanonical()) return false;
  		if (a.isNamedType()) {
  			// if two types are named differently, they are not identical!
  			if (b.isNamedType())
@@ -172,21 +185,33 @@ public class TypeChecking {
  		if (b.isNamedType())
  			return false;
  		if (a.getClass() != b.getClass()) return false;
+ 		if (memo == null)
+ 			return sameStructure(a, b, null);
+ 		Boolean known = memo.getIdentical(a, b);
+ 		if (known != null) return known;
+ 		boolean result = sameStructure(a, b, memo);
+ 		if (a.isComplete() && b.isComplete())
+ 			memo.putIdentical(a, b, result);
+ 		return result;
+ 	}
+
+ 	// a and b are types of the same class; their names are not compared
+ 	private static boolean sameStructure( Type a, Type b, TypePairs memo ) {
  		if (a instanceof Type.Array) {
  			Type.Array aa = (Type.Array)a;
  			Type.Array bb = (Type.Array)b;
  			return (aa.getSize() == bb.getSize()) &&
- 				identicalTypes(aa.getElementType(), bb.getElementType());
+ 				identical(aa.getElementType(), bb.getElementType(), memo);
  		}
  		if (a instanceof Type.Slice) {
  			Type.Slice aa = (Type.Slice)a;
  			Type.Slice bb = (Type.Slice)b;
- 			return identicalTypes(aa.getElementType(), bb.getElementType());
+ 			return identical(aa.getElementType(), bb.getElementType(), memo);
  		}
  		if (a instanceof Type.Pointer) {
  			Type.Pointer aa = (Type.Pointer)a;
  			Type.Pointer bb = (Type.Pointer)b;
- 			return identicalTypes(aa.getBaseType(), bb.getBaseType());
+ 			return identical(aa.getBaseType(), bb.getBaseType(), memo);
  		}
  		if (a instanceof Type.Struct) {
  			Type.Struct aa = (Type.Struct)a;
@@ -198,11 +223,11 @@ public class TypeChecking {
  			Iterator<Symbol> av = af.values().iterator();
  			Iterator<Symbol> bv = bf.values().iterator();
  			while(av.hasNext()) {
- 				Symbol as = (Symbol)av.next();
- 				Symbol bs = (Symbol)bv.next();
+ 				Symbol as = av.next();
+ 				Symbol bs = bv.next();
  				if (!as.getName().equals(bs.getName()))
  					return false;
- 				if (!identicalTypes(as.getType(), bs.getType()))
+ 				if (!identical(as.getType(), bs.getType(), memo))
  					return false;
  			}
  			return true;
@@ -214,13 +239,13 @@ public class TypeChecking {
  			Type[] bp = bb.getParameters();
  			if (ap.length != bp.length) return false;
  			for(int i=0; i<ap.length; i++) {
- 				if (!identicalTypes(ap[i], bp[i])) return false;
+ 				if (!identical(ap[i], bp[i], memo)) return false;
  			}
  			ap = aa.getResults();
  			bp = bb.getResults();
  			if (ap.length != bp.length) return false;
  			for(int i=0; i<ap.length; i++) {
- 				if (!identicalTypes(ap[i], bp[i])) return false;
+ 				if (!identical(ap[i], bp[i], memo)) return false;
  			}
  			return true;
  		}
@@ -228,221 +253,208 @@ public class TypeChecking {
  		return false;
  	}
 
-  // Take the type that is higher. IE: int , int -> int.
-  //                                   int , flt -> flt
-  public static Type HigherType(Type lhs, Type rhs) {
-    // Take named types (highest)
-    if (lhs.isNamedType()) {
-      return lhs;
-    }
-    if (rhs.isNamedType()) {
-      return rhs;
-    }
+	// ************** operator tables ******************
+	//
+	// For each operator token type there is a table giving the result of
+	// applying the operator to operands of each kind (see TypeKind), so
+	// checking an operator needs only a couple of array lookups.
+
+	// the entries in the tables
+	private static final byte BAD = 0;		// operator not defined on the operand types
+	private static final byte BAD_COUNT = 1;	// shift count is not an unsigned integer
+	private static final byte UNKNOWN = 2;		// an operand has unknown type, error already reported
+	private static final byte BOOL = 3;		// result is bool
+	private static final byte LEFT = 4;		// result has type of left (or only) operand
+	private static final byte RIGHT = 5;		// result has type of right operand
+	private static final byte DEREF = 6;		// result is base type of the pointer operand
+	private static final byte ADDR = 7;		// result is pointer to the operand type
+
+	private static final int NKINDS = TypeKind.values().length;
+	private static final int NTOKENS = GooParser.VOCABULARY.getMaxTokenType()+1;
+
+	// [token type][lhs kind * NKINDS + rhs kind], null if not a binary operator
+	private static final byte[][] binaryOps = new byte[NTOKENS][];
+	// [token type][operand kind], null if not a unary operator
+	private static final byte[][] unaryOps = new byte[NTOKENS][];
+	// the error message for a BAD entry, by token type
+	private static final String[] binaryMsgs = new String[NTOKENS];
+	private static final String[] unaryMsgs = new String[NTOKENS];
+
+	static {
+		for( int t=0; t<NTOKENS; t++ ) {
+			String lit = GooParser.VOCABULARY.getLiteralName(t);
+			if (lit == null) continue;
+			lit = lit.substring(1, lit.length()-1);
+			if (lit.equals("++") || lit.equals("--")) {
+				unaryOps[t] = unaryTable(Operator.ADD);
+				unaryMsgs[t] = "Can only use " + lit + " on numbers.";
+				continue;
+			}
+			Operator op = Operator.fromText(lit);
+			if (op == null) continue;
+			if (op != Operator.NOT) {
+				binaryOps[t] = binaryTable(op);
+				binaryMsgs[t] = binaryMessage(op);
+			}
+			switch(op) {
+				case ADD: case SUB: case XOR: case NOT: case MUL: case AND:
+					unaryOps[t] = unaryTable(op);
+					unaryMsgs[t] = unaryMessage(op);
+					break;
+				default:
+					break;
+			}
+		}
+	}
 
-    // Take floats next
-    if (lhs instanceof Type.Flt) {
-      return lhs;
-    }
-    if (rhs instanceof Type.Flt) {
-      return rhs;
-    }
+	private static byte[] binaryTable( Operator op ) {
+		byte[] tab = new byte[NKINDS*NKINDS];
+		for( TypeKind l : TypeKind.values() )
+			for( TypeKind r : TypeKind.values() )
+				tab[l.ordinal()*NKINDS + r.ordinal()] = binaryResult(op, l, r);
+		return tab;
+	}
 
-    // Take Ints last
-    if (lhs instanceof Type.Int) {
-      return lhs;
-    }
-    return null;
-  }
+	private static byte binaryResult( Operator op, TypeKind l, TypeKind r ) {
+		if (l == TypeKind.Unknown || r == TypeKind.Unknown)
+			return UNKNOWN;
+		switch(op) {
+			case LAND: case LOR:
+				return l == TypeKind.Bool && r == TypeKind.Bool ? BOOL : BAD;
+			case EQ: case NE:
+				if (l.isNumeric() && r.isNumeric()) return BOOL;
+				if (l != r) return BAD;
+				switch(l) {
+					case Bool: case String: case Pointer: case Struct: case Array:
+						return BOOL;
+					default:
+						return BAD;
+				}
+			case LT: case LE: case GT: case GE:
+				if (l.isNumeric() && r.isNumeric()) return BOOL;
+				return l == TypeKind.String && r == TypeKind.String ? BOOL : BAD;
+			case ADD:
+				if (l == TypeKind.String && r == TypeKind.String) return LEFT;
+				return l.isNumeric() && r.isNumeric() ? arithmetic(l, r) : BAD;
+			case SUB: case MUL: case DIV:
+				return l.isNumeric() && r.isNumeric() ? arithmetic(l, r) : BAD;
+			case REM: case OR: case XOR: case AND: case AND_NOT:
+				return l.isInteger() && r.isInteger() ? arithmetic(l, r) : BAD;
+			case SHL: case SHR:
+				if (r != TypeKind.Uint && r != TypeKind.UntypedInt) return BAD_COUNT;
+				return l.isInteger() ? LEFT : BAD;
+			default:
+				return BAD;
+		}
+	}
 
+	// the result type of an arithmetic operator applied to two numbers:
+	// a typed operand is preferred to an untyped one, a float to an integer
+	private static byte arithmetic( TypeKind l, TypeKind r ) {
+		if (l.isUntyped() != r.isUntyped())
+			return l.isUntyped() ? RIGHT : LEFT;
+		if (r == TypeKind.Float || r == TypeKind.UntypedFloat)
+			return l == r ? LEFT : RIGHT;
+		return LEFT;
+	}
+
+	private static byte[] unaryTable( Operator op ) {
+		byte[] tab = new byte[NKINDS];
+		for( TypeKind k : TypeKind.values() ) {
+			byte res;
+			switch(op) {
+				case ADD: case SUB: res = k.isNumeric() ? LEFT : BAD;  break;
+				case XOR:           res = k.isInteger() ? LEFT : BAD;  break;
+				case NOT:           res = k == TypeKind.Bool ? LEFT : BAD;  break;
+				case MUL:           res = k == TypeKind.Pointer ? DEREF : BAD;  break;
+				default:            res = ADDR;  break;
+			}
+			if (k == TypeKind.Unknown && op != Operator.AND)
+				res = UNKNOWN;
+			tab[k.ordinal()] = res;
+		}
+		return tab;
+	}
+
+	private static String binaryMessage( Operator op ) {
+		switch(op) {
+			case LAND: case LOR:
+				return "Can only use " + op + " binary op on booleans.";
+			case ADD:
+				return "Can only use + on numbers or strings.";
+			case SUB: case MUL: case DIV:
+				return "Can only use " + op + " on numbers.";
+			case SHL: case SHR:
+				return "Can only bitshift integers.";
+			default:
+				if (op.isRelational())
+					return "Can only use relational operators on equivalent types.";
+				return "Can only use " + op + " on integers.";
+		}
+	}
+
+	private static String unaryMessage( Operator op ) {
+		switch(op) {
+			case NOT: return "Can only use ! on booleans.";
+			case XOR: return "Can only use ^ on integers.";
+			case MUL: return "Can only dereference pointers.";
+			case AND: return "Can only reference variables.";
+			default:  return "Can only use " + op + " on numbers.";
+		}
+	}
 
  	// Report an error if the operator is not applicable to the operand types;
  	// return the type of the result
-    public static Type checkBinOp(Type lhs, Type rhs, String op, ParserRuleContext ctx) {
-      // binary_op  = "||" | "&&" | rel_op | add_op | mul_op .
-      // rel_op     = "==" | "!=" | "<" | "<=" | ">" | ">=" .
-      // add_op     = "+" | "-" | "|" | "^" .
-      // mul_op     = "*" | "/" | "%" | "<<" | ">>" | "&" | "&^" .
-
-      // Named types must match (strict type checking)
-      if (lhs.isNamedType() && rhs.isNamedType()) {
-         if (!identicalTypes(lhs, rhs)) {
-           ReportError.error(ctx, "Mismatch type: " + lhs.getName() + " " + op + " "+ rhs.getName());
-           return Type.unknownType;
-         }
-      }
-
-      // For ease latter.
-      boolean lhsNumber = (GetUnderlyingType(lhs) instanceof Type.UntypedNumber ||
-                           GetUnderlyingType(lhs) instanceof Type.Uint ||
-                           GetUnderlyingType(lhs) instanceof Type.Int ||
-                           GetUnderlyingType(lhs) instanceof Type.Flt );
-
-      boolean rhsNumber = (GetUnderlyingType(rhs) instanceof Type.UntypedNumber ||
-                           GetUnderlyingType(rhs) instanceof Type.Uint ||
-                           GetUnderlyingType(rhs) instanceof Type.Int ||
-                           GetUnderlyingType(rhs) instanceof Type.Flt );
-
-
-      // if types are NAMED, the name must be the same
-      switch(op) {
-        case "||":
-        case "&&":
-          if (lhs.name != "bool" || rhs.name != "bool") {
-            ReportError.error(ctx, "Can only use " + op + " binary op on booleans.");
-            return Type.unknownType;
-          }
-          return Type.boolType;
-
-        // Relational Operators "==" | "!=" | "<" | "<=" | ">" | ">=" .
-        // Type x & y are numbers or
-        // Type x & y are strings or
-        // Type x & y are numbers
-        case "==":
-        case "!=":
-        case "<":
-        case "<=":
-        case ">":
-        case ">=":
-          if (!(lhsNumber && rhsNumber)) {
-            if (GetUnderlyingType(lhs).name != "string" || GetUnderlyingType(rhs).name != "string") {
-              if (lhs.name != rhs.name) {
-                ReportError.error(ctx, "Can only use relational operators on equivalent types.");
-                return Type.unknownType;
-              }
-            }
-          }
-          return Type.boolType;  // Returns a bool type.
-
-
-        // +    sum                    integers, floats, complex values, strings
-        case "+":
-          if (!(lhsNumber && rhsNumber)) {
-            if (GetUnderlyingType(lhs).name != "string" || GetUnderlyingType(rhs).name != "string") {
-              ReportError.error(ctx, "Can only use " + op + " on numbers or strings.");
-              return Type.unknownType;
-            } else {
-              return lhs;  // string + string -> string.
-            }
-          } else {
-            Type t = HigherType(lhs, rhs);
-            if (t == null) {
-              ReportError.error(ctx, "Bad Integer.");
-              return Type.unknownType;
-            }
-            return t;
-          }
-
-        // Other ops. On numbers only.
-        // -    difference             integers, floats, complex values
-        // *    product                integers, floats, complex values
-        // /    quotient               integers, floats, complex values
-        case "-":
-        case "*":
-        case "/":
-          if (!(lhsNumber && rhsNumber)) {
-            ReportError.error(ctx, "Can only use " + op + " on numbers.");
-            return Type.unknownType;
-          }
-          Type t = HigherType(lhs, rhs);
-          if (t == null) {
-            ReportError.error(ctx, "Bad Integer.");
-            return Type.unknownType;
-          }
-          return t;
-
-        // Can only shift ints by uint
-        // <<   left shift             integer << unsigned integer
-        // >>   right shift            integer >> unsigned integer
-        case "<<":
-        case ">>":
-          if (GetUnderlyingType(rhs) instanceof Type.Uint) {
-            if (!(lhs instanceof Type.UntypedNumber)) {
-                ReportError.error(ctx, "Can only bitshift integers.");
-                return Type.unknownType;
-            } else {
-              if (!((Type.UntypedNumber)GetUnderlyingType(lhs)).isInteger()) {
-                ReportError.error(ctx, "Can only bitshift integers.");
-                return Type.unknownType;
-              }
-            }
-          } else {
-            ReportError.error(ctx, "Can only bitshift by unsigned ints.");
-            return Type.unknownType;
-          }
-          return lhs;  // Out <- In
-
-        // Can only operate with left and right hand sides being integers
-        // &    bitwise AND            integers
-        // %    remainder              integers
-        // |    bitwise OR             integers
-        // ^    bitwise XOR            integers
-        // &^   bit clear (AND NOT)    integers
-        case "|":
-        case "%":
-        case "&":
-        case "&^":
-        case "^":
-          if (GetUnderlyingType(lhs) instanceof Type.UntypedNumber && GetUnderlyingType(rhs) instanceof Type.UntypedNumber) {
-            if (!((Type.UntypedNumber)GetUnderlyingType(lhs)).isInteger() || !((Type.UntypedNumber)GetUnderlyingType(rhs)).isInteger()) {
-              ReportError.error(ctx, "Can use" + op + " on integers.");
-              return Type.unknownType;
-            }
-          } else {
-            ReportError.error(ctx, "Can use " + op + " on integers.");
-            return Type.unknownType;
-          }
-          return lhs;  // Uut <- in
-
-        default:
-          ReportError.error(ctx, "Unknown operator " + op);
-          return Type.unknownType;  // Bad!
-      }
-    }
+	public Type checkBinOp(Type lhs, Type rhs, Token op, ParserRuleContext ctx) {
+		// Named types must match (strict type checking)
+		if (lhs.isNamedType() && rhs.isNamedType() && !identical(lhs, rhs)) {
+			errors.error(ctx, Diagnostic.Id.MISMATCHED_TYPES, lhs.getName(), op.getText(), rhs.getName());
+			return Type.unknownType;
+		}
+		int t = op.getType();
+		byte[] tab = t >= 0 && t < NTOKENS ? binaryOps[t] : null;
+		if (tab == null) {
+			errors.error(ctx, Diagnostic.Id.UNKNOWN_OPERATOR, op.getText());
+			return Type.unknownType;
+		}
+		switch(tab[lhs.getKind().ordinal()*NKINDS + rhs.getKind().ordinal()]) {
+			case BOOL:  return Type.boolType;
+			case LEFT:  return lhs;
+			case RIGHT: return rhs;
+			case UNKNOWN: return Type.unknownType;
+			case BAD_COUNT:
+				errors.error(ctx, Diagnostic.Id.BAD_SHIFT_COUNT);
+				return Type.unknownType;
+			default:
+				errors.error(ctx, Diagnostic.Id.BAD_OPERAND, binaryMsgs[t]);
+				return Type.unknownType;
+		}
+	}
 
  	// Report an error if the operator is not applicable to the operand type;
- 	// return the type of the result
-    public static Type checkUnaryOp(Type opnd, String op, ParserRuleContext ctx, Symbol sym) {
-    	// very much code is missing here!
-    	// unaryOp:   '+' | '-' | '!' | '^' | '*' | '&' ;
-
-      switch (op) {
-        // Only work with integers
-        case("!") :
-        case("+") :
-        case("-") :
-        case("^") :
-          if (opnd instanceof Type.UntypedNumber ||
-              opnd instanceof Type.Uint ||
-              opnd instanceof Type.Int ||
-              opnd instanceof Type.Flt) {
-            return opnd;
-          } else {
-            ReportError.error(ctx, "");
-            return Type.unknownType;
-          }
-
-        case("*") :
-          if (opnd instanceof Type.Pointer) {
-            return ((Type.Pointer)opnd).getBaseType();
-          } else {
-            ReportError.error(ctx, "Can only derefernce pointers.");
-            return Type.unknownType;  // Bad!
-          }
-
-        case("&") :
-          if (sym != null) {
-            return Type.newPointerType(opnd);
-          } else {
-            ReportError.error(ctx, "Can only reference variables.");
-            return Type.unknownType;
-          }
-
-
-        default:
-          ReportError.error(ctx, "Unknown operator " + op);
-          return Type.unknownType;  // Bad!
-      }
-    }
+ 	// return the type of the result. sym is the variable whose address is
+ 	// taken by the & operator, if there is one.
+	public Type checkUnaryOp(Type opnd, Token op, ParserRuleContext ctx, Symbol sym) {
+		int t = op.getType();
+		byte[] tab = t >= 0 && t < NTOKENS ? unaryOps[t] : null;
+		if (tab == null) {
+			errors.error(ctx, Diagnostic.Id.UNKNOWN_OPERATOR, op.getText());
+			return Type.unknownType;
+		}
+		switch(tab[opnd.getKind().ordinal()]) {
+			case LEFT:  return opnd;
+			case UNKNOWN: return Type.unknownType;
+			case DEREF: return ((Type.Pointer)opnd).getBaseType();
+			case ADDR:
+				if (sym != null)
+					return types.newPointerType(opnd);
+				break;
+			default:
+				break;
+		}
+		errors.error(ctx, Diagnostic.Id.BAD_OPERAND, unaryMsgs[t]);
+		return Type.unknownType;
+	}
 
 // END MAIN
 }
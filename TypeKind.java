@@ -0,0 +1,29 @@
+// TypeKind.java
+//
+// A small tag carried by every Type which says what sort of type it is.
+// A named type has the same kind as the type it was declared with, so the
+// kind of a type is the kind of its underlying type. The kinds are used to
+// index the operator tables in TypeChecking.
+
+public enum TypeKind {
+	Unknown,
+	Bool, String,
+	Int, Uint, Float,
+	UntypedInt, UntypedFloat,	// untyped numeric constants
+	Array, Slice, Pointer, Struct, Function,
+	TypeList,
+	Other;	// void, label and the special types used for library functions
+
+	public boolean isNumeric() {
+		return this == Int || this == Uint || this == Float
+			|| this == UntypedInt || this == UntypedFloat;
+	}
+
+	public boolean isInteger() {
+		return this == Int || this == Uint || this == UntypedInt;
+	}
+
+	public boolean isUntyped() {
+		return this == UntypedInt || this == UntypedFloat;
+	}
+}
@@ -0,0 +1,78 @@
+// TypePairs.java
+//
+// Remembers the answers of TypeChecking for pairs of types which have to
+// be compared structurally: whether they are identical, and whether a
+// value of one may be assigned to the other (see TypeChecking.identical
+// and TypeChecking.checkAssignability). Such types are the composite
+// types which are not canonical (see TypeTable), such as struct types,
+// where comparing two types means comparing every field, and the same two
+// types tend to be compared over and over.
+//
+// Types are compared by reference. Both questions are symmetric here, so
+// (a, b) and (b, a) are the same pair. Only complete types may be entered,
+// since an incomplete one may still change.
+//
+// Each compilation has its own table. The function bodies are checked in
+// parallel, so the methods are synchronized.
+
+import java.util.HashMap;
+
+public class TypePairs {
+	private final HashMap<Key,Boolean> answers = new HashMap<Key,Boolean>();
+	private int hits;	// answers found, for the benchmarks
+
+	private static final class Key {
+		final char question;	// 'i'=identical, 'a'=assignable
+		final Type a, b;
+		final int hash;
+
+		Key( char question, Type a, Type b ) {
+			this.question = question;
+			this.a = a;  this.b = b;
+			hash = question*31 + System.identityHashCode(a) + System.identityHashCode(b);
+		}
+
+		@Override
+		public int hashCode() { return hash; }
+
+		@Override
+		public boolean equals( Object o ) {
+			if (!(o instanceof Key)) return false;
+			Key k = (Key)o;
+			return k.question == question && (k.a == a && k.b == b || k.a == b && k.b == a);
+		}
+	}
+
+	// whether a and b are identical, or null if the pair has not been entered
+	public Boolean getIdentical( Type a, Type b ) {
+		return get(new Key('i', a, b));
+	}
+
+	public void putIdentical( Type a, Type b, boolean identical ) {
+		put(new Key('i', a, b), identical);
+	}
+
+	// whether a and b have identical underlying types, so that a value of
+	// one may be assigned to the other, or null if the pair has not been entered
+	public Boolean getAssignable( Type a, Type b ) {
+		return get(new Key('a', a, b));
+	}
+
+	public void putAssignable( Type a, Type b, boolean assignable ) {
+		put(new Key('a', a, b), assignable);
+	}
+
+	private synchronized Boolean get( Key k ) {
+		Boolean answer = answers.get(k);
+		if (answer != null) hits++;
+		return answer;
+	}
+
+	private synchronized void put( Key k, boolean answer ) {
+		answers.put(k, answer);
+	}
+
+	public synchronized int size() { return answers.size(); }
+
+	public synchronized int getHits() { return hits; }
+}
@@ -0,0 +1,145 @@
+// TypeTable.java
+//
+// Hash-consing (interning) table for the unnamed composite types:
+// arrays, slices, pointers and function signatures.
+//
+// A type obtained from the table is the only instance with its structure,
+// so two such types are identical exactly when they are the same object.
+// A type is only entered in the table when all of its component types
+// are complete and canonical (see Type.isCanonical); otherwise a fresh
+// instance is returned, exactly as the static factory methods in Type do.
+// Types in the table must never be modified -- makeNamedCopy copies them.
+//
+// Each compilation has its own table. Its parent is the table of the
+// predefined names, which is searched first and is never modified after
+// the predefined names have been built.
+
+import java.util.*;
+
+public class TypeTable {
+	final TypeTable parent;
+	private final HashMap<Key,Type> table = new HashMap<Key,Type>();
+
+	public TypeTable( TypeTable parent ) {
+		this.parent = parent;
+	}
+
+	// the structure of an interned type: components are compared by reference
+	private static final class Key {
+		final char kind;	// 'a'=array, 's'=slice, 'p'=pointer, 'f'=function
+		final int size;		// array size, or number of parameters
+		final Type[] parts;
+		final int hash;
+
+		Key( char kind, int size, Type[] parts ) {
+			this.kind = kind;  this.size = size;  this.parts = parts;
+			int h = kind*31 + size;
+			for( Type t : parts )
+				h = h*31 + System.identityHashCode(t);
+			hash = h;
+		}
+
+		@Override
+		public int hashCode() { return hash; }
+
+		@Override
+		public boolean equals( Object o ) {
+			if (!(o instanceof Key)) return false;
+			Key k = (Key)o;
+			if (k.kind != kind || k.size != size || k.parts.length != parts.length)
+				return false;
+			for( int i=0; i<parts.length; i++ )
+				if (k.parts[i] != parts[i]) return false;
+			return true;
+		}
+	}
+
+	public Type.Array newArrayType( Type elemType, int size ) {
+		Key k = size >= 0 && internable(elemType) ? new Key('a', size, new Type[]{elemType}) : null;
+		Type t = lookup(k);
+		if (t == null) {
+			Type.Array a = Type.newArrayType(elemType);
+			a.setSize(size);
+			t = enter(k, a);
+		}
+		return (Type.Array)t;
+	}
+
+	public Type.Slice newSliceType( Type elemType ) {
+		Key k = internable(elemType) ? new Key('s', 0, new Type[]{elemType}) : null;
+		Type t = lookup(k);
+		if (t == null)
+			t = enter(k, Type.newSliceType(elemType));
+		return (Type.Slice)t;
+	}
+
+	public Type.Pointer newPointerType( Type baseType ) {
+		Key k = internable(baseType) ? new Key('p', 0, new Type[]{baseType}) : null;
+		Type t = lookup(k);
+		if (t == null)
+			t = enter(k, Type.newPointerType(baseType));
+		return (Type.Pointer)t;
+	}
+
+	public Type.Function newFunctionSignature( Type[] params, Type[] results ) {
+		Type[] parts = new Type[params.length + results.length];
+		System.arraycopy(params, 0, parts, 0, params.length);
+		System.arraycopy(results, 0, parts, params.length, results.length);
+		Key k = internable(parts) ? new Key('f', params.length, parts) : null;
+		Type t = lookup(k);
+		if (t == null)
+			t = enter(k, Type.newFunctionSignature(params, results));
+		return (Type.Function)t;
+	}
+
+	public Type.Function newFunctionSignature( LinkedList<Type> params, LinkedList<Type> results ) {
+		return newFunctionSignature(params.toArray(new Type[0]), results.toArray(new Type[0]));
+	}
+
+	// For use when function has 0 results (i.e. a void function)
+	public Type.Function newFunctionSignature( Type[] params ) {
+		return newFunctionSignature(params, new Type[0]);
+	}
+
+	// For use when function has 1 result
+	public Type.Function newFunctionSignature( Type[] params, Type result ) {
+		return newFunctionSignature(params, new Type[]{result});
+	}
+
+	// Enters an existing type in the table (used for the predefined nil type);
+	// t must be complete and have canonical components
+	public synchronized void intern( Type.Pointer t ) {
+		Key k = new Key('p', 0, new Type[]{t.getBaseType()});
+		if (!table.containsKey(k)) {
+			t.setInterned(true);
+			table.put(k, t);
+		}
+	}
+
+	private static boolean internable( Type... parts ) {
+		for( Type t : parts )
+			if (t == null || !t.isComplete() || !t.isCanonical()) return false;
+		return true;
+	}
+
+	private Type lookup( Key k ) {
+		if (k == null) return null;
+		if (parent != null) {
+			Type t = parent.get(k);
+			if (t != null) return t;
+		}
+		return get(k);
+	}
+
+	private synchronized Type get( Key k ) {
+		return table.get(k);
+	}
+
+	private synchronized Type enter( Key k, Type t ) {
+		if (k == null) return t;
+		Type prev = table.putIfAbsent(k, t);
+		if (prev != null) return prev;  // another thread got there first
+		t.setInterned(true);
+		return t;
+	}
+}
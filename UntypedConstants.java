@@ -0,0 +1,127 @@
+// UntypedConstants.java
+//
+// A cache of the types of untyped numeric constants (Type.UntypedNumber).
+//
+// Entries are found by value, not by source text, so 1, 0x1, 01 and 1.0
+// all give the same instance. The cache is a fixed size direct-mapped
+// table: an entry may be replaced by a newer value which hashes to the
+// same slot, so memory use is bounded however many constants are seen.
+// UntypedNumber instances are immutable, which makes it safe to share
+// one cache between compilations running in different threads.
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class UntypedConstants {
+	public static final int DEFAULT_SIZE = 4096;
+
+	private final AtomicReferenceArray<Type.UntypedNumber> slots;
+	private final int mask;
+
+	// size is rounded up to a power of two
+	public UntypedConstants( int size ) {
+		int n = Integer.highestOneBit(Math.max(size, 16) - 1) << 1;
+		slots = new AtomicReferenceArray<Type.UntypedNumber>(n);
+		mask = n - 1;
+	}
+
+	public UntypedConstants() {
+		this(DEFAULT_SIZE);
+	}
+
+	public Type.UntypedNumber get( long v ) {
+		int slot = hash(v) & mask;
+		Type.UntypedNumber n = slots.get(slot);
+		if (n != null && n.isInteger() && n.getIntValue() == v)
+			return n;
+		n = Type.newUntypedNumber(v);
+		slots.set(slot, n);
+		return n;
+	}
+
+	public Type.UntypedNumber get( double v ) {
+		long iv = (long)v;
+		if (iv == v && !Double.isInfinite(v))
+			return get(iv);  // share the entry with the integer value
+		long bits = Double.doubleToLongBits(v);
+		int slot = hash(~bits) & mask;
+		Type.UntypedNumber n = slots.get(slot);
+		if (n != null && !n.isInteger()
+				&& Double.doubleToLongBits(n.getDoubleValue()) == bits)
+			return n;
+		n = Type.newUntypedNumber(v);
+		slots.set(slot, n);
+		return n;
+	}
+
+	// big values are rare, so they are not cached
+	public Type.UntypedNumber get( BigInteger v ) {
+		if (v.bitLength() < 64)
+			return get(v.longValue());
+		return Type.newUntypedNumber(v);
+	}
+
+	// the type of a numeric constant value
+	public Type.UntypedNumber get( Constant c ) {
+		switch(c.getKind()) {
+			case Int:    return get(c.getIntValue());
+			case BigInt: return get(c.getBigValue());
+			default:     return get(c.getDoubleValue());
+		}
+	}
+
+	// Returns the constant for an integer or floating point literal, optionally
+	// preceded by a sign; returns null if the text is not a valid number.
+	// Integer literals may be decimal, octal (leading 0) or hexadecimal (0x).
+	public Type.UntypedNumber parse( String text ) {
+		int len = text.length();
+		int i = 0;
+		boolean neg = false;
+		if (len > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+			neg = text.charAt(0) == '-';
+			i++;
+		}
+		if (i >= len) return null;
+		int radix = 10;
+		if (len-i > 2 && text.charAt(i) == '0' && (text.charAt(i+1) == 'x' || text.charAt(i+1) == 'X')) {
+			radix = 16;  i += 2;
+		} else if (isFloatingPoint(text, i)) {
+			try {
+				return get(Double.parseDouble(text));
+			} catch(NumberFormatException e) {
+				return null;
+			}
+		} else if (len-i > 1 && text.charAt(i) == '0')
+			radix = 8;
+		int start = i;
+		long v = 0;
+		for( ; i<len; i++ ) {
+			int d = Character.digit(text.charAt(i), radix);
+			if (d < 0) return null;
+			if (v > (Long.MAX_VALUE - d) / radix) {
+				// too big for a long: keep the exact value
+				try {
+					BigInteger bv = new BigInteger(text.substring(start), radix);
+					return get(neg ? bv.negate() : bv);
+				} catch(NumberFormatException e) {
+					return null;
+				}
+			}
+			v = v*radix + d;
+		}
+		return get(neg ? -v : v);
+	}
+
+	private static boolean isFloatingPoint( String text, int i ) {
+		for( ; i<text.length(); i++ ) {
+			char c = text.charAt(i);
+			if (c == '.' || c == 'e' || c == 'E') return true;
+		}
+		return false;
+	}
+
+	private static int hash( long v ) {
+		long h = v * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+}
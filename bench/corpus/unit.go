@@ -0,0 +1,108 @@
+// One unit of the benchmark corpus. The benchmarks make larger inputs by
+// repeating everything after the package clause with each "_0" suffix
+// replaced by "_1", "_2", ...
+
+package main;
+
+const (
+	Size_0 = 64;
+	Mask_0 = Size_0 - 1;
+	Scale_0 float64 = 1.5;
+	Name_0 = "unit";
+);
+
+type (
+	Point_0 struct { x, y int; };
+	Node_0 struct { val int; next *Node_0; pos Point_0; };
+	Grid_0 [Size_0]int;
+	Count_0 int;
+);
+
+var table_0 [Size_0]int;
+var origin_0 Point_0;
+var names_0 []string;
+
+func clamp_0(v int, lo int, hi int) int {
+	if v < lo {
+		return lo;
+	} else if v > hi {
+		return hi;
+	};
+	return v;
+};
+
+func sum_0(xs Grid_0, n int) int {
+	var total int = 0;
+	for i := 0; i < n; i++ {
+		total = total + xs[i];
+	};
+	return total;
+};
+
+func hash_0(s string, n int, seed int) int {
+	var h int = seed;
+	for i := 0; i < n; i++ {
+		h = (h * 31 + i) & Mask_0;
+		h = h ^ (h >> 3) | (h << 1) & Mask_0;
+	};
+	return h;
+};
+
+func push_0(head *Node_0, v int) *Node_0 {
+	var n *Node_0 = new(Node_0);
+	n.val = v;
+	n.next = head;
+	n.pos.x = v % Size_0;
+	n.pos.y = v / Size_0;
+	return n;
+};
+
+func walk_0(head *Node_0) int {
+	var c Count_0 = 0;
+	var total int = 0;
+	for p := head; p != nil; p = p.next {
+		c++;
+		total = total + p.val * 2 - p.pos.x + p.pos.y;
+		if total > 1000 && c > 10 || total < -1000 {
+			break;
+		};
+	};
+	return total + int(c);
+};
+
+func fill_0(k int) {
+	for i := 0; i < Size_0; i++ {
+		var v int = clamp_0(i * k - 3, 0, Mask_0);
+		if v % 2 == 0 {
+			table_0[i] = v;
+		} else {
+			table_0[i] = -v;
+		};
+	};
+};
+
+func scale_0(x float64, n int) float64 {
+	var r float64 = x;
+	for n > 0 {
+		r = r * Scale_0 + 0.5;
+		n--;
+	};
+	return r;
+};
+
+func run_0() int {
+	var xs Grid_0;
+	fill_0(3);
+	var head *Node_0 = nil;
+	for i := 0; i < 20; i++ {
+		head = push_0(head, xs[i] + table_0[i]);
+	};
+	var p Point_0 = Point_0{ 1, 2 };
+	origin_0 = p;
+	var s string = Name_0 + "-run";
+	var f float64 = scale_0(float64(p.x), 4);
+	if f > 10.0 {
+		println(s, f);
+	};
+	return walk_0(head) + sum_0(xs, Size_0) + hash_0(s, 4, p.y);
+};
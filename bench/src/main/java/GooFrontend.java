@@ -0,0 +1,159 @@
+// GooFrontend.java
+//
+// Gives the benchmarks (package goo.bench) access to the compiler, whose
+// classes are in the default package; see goo/bench/Frontend.java.
+
+import org.antlr.v4.runtime.*;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class GooFrontend implements goo.bench.Frontend {
+	// the messages and dumps are not wanted
+	static final PrintStream nowhere = new PrintStream(OutputStream.nullOutputStream());
+
+	String source;
+	List<? extends Token> tokens;
+	GooParser.SourceFileContext tree;
+	Compilation comp;
+	SymTabVisitor1 pass1;
+
+	// the operands for the type checking benchmarks
+	Type[] dest, src;		// checkAssignability
+	Type[] left, right;		// identicalTypes
+	Type[] binLeft, binRight;	// checkBinOp
+	Token[] binOps;
+	TypeChecking checker;
+
+	public void setSource( String text ) {
+		source = text;
+	}
+
+	public int lex() {
+		return count(new GooScanner(CharStreams.fromString(source)));
+	}
+
+	public int lexGenerated() {
+		return count(new SemicolonInserter(new GooLexer(CharStreams.fromString(source))));
+	}
+
+	private static int count( TokenSource lexer ) {
+		int n = 0;
+		while( lexer.nextToken().getType() != Token.EOF )
+			n++;
+		return n;
+	}
+
+	public void tokenize() {
+		TokenSource lexer = new GooScanner(CharStreams.fromString(source));
+		List<Token> all = new ArrayList<>();
+		for( Token t = lexer.nextToken(); t.getType() != Token.EOF; t = lexer.nextToken() )
+			all.add(t);
+		tokens = all;
+	}
+
+	public Object parse() {
+		GooParser parser = new GooParser(new CommonTokenStream(new ListTokenSource(tokens)));
+		parser.addParseListener(new GooContext.Numberer());
+		tree = GooMain.parseSourceFile(parser);
+		if (parser.getNumberOfSyntaxErrors() > 0)
+			throw new IllegalStateException("syntax errors in the benchmark source");
+		return tree;
+	}
+
+	public Object pass1() {
+		comp = new Compilation(nowhere, false, false, false);
+		pass1 = new SymTabVisitor1(comp);
+		pass1.visit(tree);
+		return pass1;
+	}
+
+	public int pass2() {
+		SymTabVisitor2 pass2 = new SymTabVisitor2(comp);
+		pass2.setScopes(pass1.getScopes());
+		pass2.setDeclarations(pass1.getDeclarations());
+		pass2.visit(tree);
+		comp.errors.flush();
+		return comp.errors.getErrorCount();
+	}
+
+	public int prepareTypeChecks() {
+		Scope pkg = pass1.getScopes().get(tree);
+		Type intT = type(pkg, "int"), uintT = type(pkg, "uint"), floatT = type(pkg, "float64");
+		Type stringT = type(pkg, "string"), boolT = type(pkg, "bool");
+		Type point = type(pkg, "Point_0"), node = type(pkg, "Node_0");
+		Type grid = type(pkg, "Grid_0"), count = type(pkg, "Count_0");
+		TypeTable tt = comp.types;
+		// the unnamed structs have the fields of Point_0, so they are compared
+		// structurally, and the answers are remembered
+		Type xy1 = structType(pkg, "x", intT, "y", intT), xy2 = structType(pkg, "x", intT, "y", intT);
+		dest = new Type[]{ intT, floatT, stringT, point, tt.newPointerType(node), grid,
+			floatT, intT, point, xy1 };
+		src = new Type[]{ intT, floatT, stringT, point, tt.newPointerType(node), grid,
+			comp.constants.get(1.5), comp.constants.get(3L), xy1, xy2 };
+		// some identical, some not; the slices and arrays are compared structurally
+		left = new Type[]{ intT, point, tt.newSliceType(intT), tt.newArrayType(intT, 64),
+			intT, point, tt.newSliceType(intT), tt.newPointerType(point), xy1, point };
+		right = new Type[]{ intT, point, Type.newSliceType(intT), tt.newArrayType(intT, 64),
+			floatT, node, Type.newSliceType(stringT), tt.newPointerType(point), xy2, xy1 };
+		binLeft = new Type[]{ intT, floatT, stringT, intT, boolT, intT, count, intT, intT, floatT };
+		binRight = new Type[]{ intT, floatT, stringT, intT, boolT, uintT, count, intT, intT, floatT };
+		binOps = new Token[]{ op("+"), op("*"), op("+"), op("<"), op("&&"), op("<<"), op("+"), op("&"),
+			op("-"), op("/") };
+		checker = new TypeChecking(comp);
+
+		// every operand pair is valid, so nothing is reported
+		int before = comp.errors.getErrorCount();
+		for( int i=0; i<dest.length; i++ ) {
+			checkAssignability(i);
+			checkBinOp(i);
+		}
+		if (comp.errors.getErrorCount() != before)
+			throw new IllegalStateException("type checking benchmark operands report errors");
+		// and the second time, the structs are not compared again
+		int hits = comp.typePairs.getHits();
+		for( int i=0; i<dest.length; i++ )
+			checkAssignability(i);
+		if (comp.typePairs.getHits() - hits != 2)
+			throw new IllegalStateException("assignability of the struct operands is not remembered");
+		return dest.length;
+	}
+
+	public boolean checkAssignability( int i ) {
+		return checker.checkAssignability(dest[i], src[i], null);
+	}
+
+	public boolean identicalTypes( int i ) {
+		return TypeChecking.identicalTypes(left[i], right[i]);
+	}
+
+	public Object checkBinOp( int i ) {
+		return checker.checkBinOp(binLeft[i], binRight[i], binOps[i], null);
+	}
+
+	private static Type type( Scope pkg, String name ) {
+		Symbol sy = pkg.resolve(name);
+		if (sy == null || sy.getKind() != Symbol.Kind.TypeName)
+			throw new IllegalStateException("benchmark source does not declare type " + name);
+		return sy.getType();
+	}
+
+	// an unnamed struct type with the fields name0 of type0, name1 of type1
+	private static Type structType( Scope pkg, String name0, Type type0, String name1, Type type1 ) {
+		Type.Struct s = Type.newStructType(pkg);
+		s.define(new Symbol(name0, Symbol.Kind.Field, type0, s));
+		s.define(new Symbol(name1, Symbol.Kind.Field, type1, s));
+		s.setComplete(true);
+		return s;
+	}
+
+	// a token for the operator symbol s
+	private static Token op( String s ) {
+		String lit = "'" + s + "'";
+		for( int t=0; t<=GooParser.VOCABULARY.getMaxTokenType(); t++ )
+			if (lit.equals(GooParser.VOCABULARY.getLiteralName(t)))
+				return new CommonToken(t, s);
+		throw new IllegalArgumentException("not a token: " + s);
+	}
+}
@@ -0,0 +1,43 @@
+// BenchMain.java
+//
+// Main class of benchmarks.jar. It takes the usual JMH command line
+// options, and always adds the GC profiler, so that every result comes
+// with its allocation rate (gc.alloc.rate.norm is bytes per operation).
+
+package goo.bench;
+
+import java.io.IOException;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchMain {
+
+	public static void main( String[] args ) throws RunnerException, IOException {
+		CommandLineOptions cmd;
+		try {
+			cmd = new CommandLineOptions(args);
+		} catch(CommandLineOptionException e) {
+			System.err.println(e.getMessage());
+			System.exit(2);
+			return;
+		}
+		if (cmd.shouldHelp()) {
+			cmd.showHelp();
+			return;
+		}
+		if (cmd.shouldList()) {
+			new Runner(cmd).list();
+			return;
+		}
+		Options opts = new OptionsBuilder()
+			.parent(cmd)
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(opts).run();
+	}
+}
@@ -0,0 +1,41 @@
+// Corpus.java
+//
+// The source text measured by the benchmarks: a fixed unit (the file
+// corpus/unit.go in this module) repeated a given number of times. The
+// declarations after the package clause are repeated, with the suffix
+// "_0" of each name replaced by "_1", "_2", ... so that every copy
+// declares different names and the result is a valid program.
+
+package goo.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+public final class Corpus {
+	static final String PACKAGE_CLAUSE = "package main;";
+
+	private Corpus() { }
+
+	public static String unit() {
+		try (InputStream in = Corpus.class.getResourceAsStream("/corpus/unit.go")) {
+			if (in == null)
+				throw new IllegalStateException("corpus/unit.go is not on the class path");
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		} catch(IOException e) {
+			throw new IllegalStateException("cannot read corpus/unit.go", e);
+		}
+	}
+
+	// the unit repeated n times
+	public static String source( int n ) {
+		String unit = unit();
+		int k = unit.indexOf(PACKAGE_CLAUSE) + PACKAGE_CLAUSE.length();
+		String body = unit.substring(k);
+		StringBuilder sb = new StringBuilder(k + n*(body.length()+16));
+		sb.append(unit, 0, k);
+		for( int i=0; i<n; i++ )
+			sb.append(i == 0 ? body : body.replace("_0", "_" + i));
+		return sb.toString();
+	}
+}
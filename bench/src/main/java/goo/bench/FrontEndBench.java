@@ -0,0 +1,84 @@
+// FrontEndBench.java
+//
+// Measures the stages of the front end separately, on the corpus repeated
+// 1, 16 and 256 times (about 100, 1700 and 27000 lines). Each benchmark
+// starts from the result of the stage before it, prepared outside the
+// measurement: parse from a list of tokens, pass 1 from a parse tree and
+// pass 2 from a fresh run of pass 1 (pass 2 updates the symbols which
+// pass 1 creates, so it cannot be repeated on the same results).
+
+package goo.bench;
+
+import org.openjdk.jmh.annotations.*;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FrontEndBench {
+
+	@State(Scope.Benchmark)
+	public static class Source {
+		@Param({"1", "16", "256"})
+		int units;
+
+		Frontend goo;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			goo = Frontend.create();
+			goo.setSource(Corpus.source(units));
+			goo.tokenize();
+			goo.parse();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Checked {
+		@Param({"1", "16", "256"})
+		int units;
+
+		Frontend goo;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			goo = Frontend.create();
+			goo.setSource(Corpus.source(units));
+			goo.tokenize();
+			goo.parse();
+		}
+
+		// pass 2 needs the symbols of a pass 1 of its own
+		@Setup(Level.Invocation)
+		public void runPass1() {
+			goo.pass1();
+		}
+	}
+
+	@Benchmark
+	public int lex( Source s ) {
+		return s.goo.lex();
+	}
+
+	@Benchmark
+	public int lexGenerated( Source s ) {
+		return s.goo.lexGenerated();
+	}
+
+	@Benchmark
+	public Object parse( Source s ) {
+		return s.goo.parse();
+	}
+
+	@Benchmark
+	public Object pass1( Source s ) {
+		return s.goo.pass1();
+	}
+
+	@Benchmark
+	public int pass2( Checked s ) {
+		return s.goo.pass2();
+	}
+}
@@ -0,0 +1,55 @@
+// Frontend.java
+//
+// The operations of the Goo front end which are measured by the
+// benchmarks. JMH does not accept benchmarks in the default package, and
+// classes in the default package cannot be named from any other package;
+// so the benchmarks reach the compiler through this interface, which is
+// implemented by GooFrontend (in the default package).
+//
+// An instance holds one source text and the results of the stages which
+// have been run on it; each stage uses the result of the one before.
+
+package goo.bench;
+
+public interface Frontend {
+
+	// the implementation in the default package
+	static Frontend create() {
+		try {
+			return (Frontend)Class.forName("GooFrontend").getDeclaredConstructor().newInstance();
+		} catch(ReflectiveOperationException e) {
+			throw new IllegalStateException("cannot create GooFrontend", e);
+		}
+	}
+
+	void setSource( String text );
+
+	// lexes the source; returns the number of tokens
+	int lex();
+
+	// as lex, but with the lexer generated by ANTLR, for comparison
+	int lexGenerated();
+
+	// lexes the source and keeps the tokens, for parse
+	void tokenize();
+
+	// parses the tokens kept by tokenize and keeps the tree
+	Object parse();
+
+	// runs pass 1 on the tree kept by parse
+	Object pass1();
+
+	// runs pass 2 on the results of pass1; returns the number of errors
+	int pass2();
+
+	// Builds the operands for the type checking benchmarks from the types
+	// declared by the source, which has been checked by pass2; returns the
+	// number of operand pairs of each kind
+	int prepareTypeChecks();
+
+	boolean checkAssignability( int i );
+
+	boolean identicalTypes( int i );
+
+	Object checkBinOp( int i );
+}
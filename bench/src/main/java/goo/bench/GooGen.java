@@ -0,0 +1,355 @@
+// GooGen.java
+//
+// Writes synthetic Goo programs, for measuring how the front end scales
+// with the size and the shape of its input.
+//
+// Usage:
+//     java -cp benchmarks.jar goo.bench.GooGen [options] [-o file.go]
+//
+//   -seed N      seed of the random choices (default 1)
+//   -lines N     approximate number of lines (default 1000)
+//   -shape S     mixed (default), functions, nesting, expressions,
+//                literals, structs or consts
+//   -funcs N  -depth N  -expr N  -literal N  -width N  -consts N
+//                override the numbers set by the shape (see Shape)
+//
+// The program is a sequence of units, each of them a const block, a
+// struct type, an array variable with a composite literal and some
+// functions; a unit only refers to names declared by itself and by the
+// units before it. Units are written until there are at least the
+// requested number of lines, then a main function. Only the constructs
+// in Goo.g4 are used, every statement ends with an explicit ';', and the
+// program has no errors (the checker in this repository accepts it).
+// The same options and seed always give the same program.
+
+package goo.bench;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class GooGen {
+
+	// The numbers of things in each unit for each shape
+	public enum Shape {
+		//          funcs depth expr literal width consts
+		MIXED(        4,    4,    6,    32,     8,    8),
+		FUNCTIONS(   40,    1,    3,     4,     2,    2),
+		NESTING(      1,   48,    4,     4,     4,    2),
+		EXPRESSIONS(  2,    2,  400,     4,     4,    4),
+		LITERALS(     1,    1,    4,  5000,     4,    2),
+		STRUCTS(      2,    2,    4,     4,   400,    2),
+		CONSTS(       1,    1,    4,     4,     4, 2000);
+
+		final int funcs, depth, expr, literal, width, consts;
+
+		Shape( int funcs, int depth, int expr, int literal, int width, int consts ) {
+			this.funcs = funcs;  this.depth = depth;  this.expr = expr;
+			this.literal = literal;  this.width = width;  this.consts = consts;
+		}
+	}
+
+	static final String[] FIELD_TYPES = { "int", "float64", "string", "bool" };
+	static final String[] INT_OPS = { "+", "-", "*", "|", "^", "&", "&^", "+", "-" };
+	static final String[] REL_OPS = { "==", "!=", "<", "<=", ">", ">=" };
+	static final int LINE_WIDTH = 90;
+
+	final Random rnd;
+	final PrintWriter out;
+	int funcs, depth, expr, literal, width, consts;
+	long lines = 0;		// lines written so far
+	int indent = 0;
+	int unit = 0;		// number of the unit being written
+
+	// the int variables which can be used at the current point of a function
+	final ArrayList<String> ints = new ArrayList<String>();
+
+	public GooGen( long seed, Shape shape, Writer w ) {
+		rnd = new Random(seed);
+		out = new PrintWriter(w);
+		funcs = shape.funcs;  depth = shape.depth;  expr = shape.expr;
+		literal = shape.literal;  width = shape.width;  consts = shape.consts;
+	}
+
+	public static void main( String[] args ) throws IOException {
+		long seed = 1, target = 1000;
+		Shape shape = Shape.MIXED;
+		String file = null;
+		Map<String,Integer> sizes = new HashMap<String,Integer>();
+		try {
+			for( int i=0; i<args.length; i++ ) {
+				String a = args[i];
+				if (i+1 >= args.length) usage();
+				String v = args[++i];
+				switch(a) {
+					case "-seed":  seed = Long.parseLong(v);  break;
+					case "-lines": target = Long.parseLong(v);  break;
+					case "-shape": shape = Shape.valueOf(v.toUpperCase());  break;
+					case "-o":     file = v;  break;
+					case "-funcs": case "-depth": case "-expr":
+					case "-literal": case "-width": case "-consts":
+						sizes.put(a.substring(1), Integer.parseInt(v));
+						break;
+					default: usage();
+				}
+			}
+		} catch(IllegalArgumentException e) {
+			usage();
+		}
+		Writer w = file == null
+			? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+			: new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+		try (BufferedWriter bw = new BufferedWriter(w, 1 << 16)) {
+			GooGen g = new GooGen(seed, shape, bw);
+			g.funcs = sizes.getOrDefault("funcs", g.funcs);
+			g.depth = sizes.getOrDefault("depth", g.depth);
+			g.expr = sizes.getOrDefault("expr", g.expr);
+			g.literal = sizes.getOrDefault("literal", g.literal);
+			g.width = sizes.getOrDefault("width", g.width);
+			g.consts = sizes.getOrDefault("consts", g.consts);
+			long n = g.generate(target);
+			if (file != null)
+				System.err.println(n + " lines written to " + file);
+		}
+	}
+
+	static void usage() {
+		System.err.println("usage: GooGen [-seed N] [-lines N] [-shape S] [-o file.go]");
+		System.err.println("              [-funcs N] [-depth N] [-expr N] [-literal N] [-width N] [-consts N]");
+		System.exit(2);
+	}
+
+	// the program as a string, for inputs which fit in memory
+	public static String generate( long seed, Shape shape, long target ) {
+		StringWriter sw = new StringWriter();
+		new GooGen(seed, shape, sw).generate(target);
+		return sw.toString();
+	}
+
+	// Writes a program of at least target lines; returns the number of lines
+	public long generate( long target ) {
+		funcs = Math.max(funcs, 1);  depth = Math.max(depth, 1);  expr = Math.max(expr, 1);
+		literal = Math.max(literal, 1);  width = Math.max(width, 1);  consts = Math.max(consts, 1);
+		line("package main;");
+		line("");
+		do {
+			writeUnit();
+			unit++;
+		} while( lines < target );
+		line("func main() {");
+		indent++;
+		line("println(F0_0(1, 2));");
+		indent--;
+		line("};");
+		out.flush();
+		return lines;
+	}
+
+	private void writeUnit() {
+		int u = unit;
+		// the constants: each one depends on the one before
+		line("const (");
+		indent++;
+		line("K" + u + "_0 = " + (1 + rnd.nextInt(100)) + ";");
+		for( int i=1; i<consts; i++ )
+			line("K" + u + "_" + i + " = (K" + u + "_" + (i-1) + " * " + (2 + rnd.nextInt(8))
+				+ " + " + rnd.nextInt(100) + ") % 1000;");
+		indent--;
+		line(");");
+
+		// the struct type; it has width fields and a pointer to its own type
+		line("type S" + u + " struct {");
+		indent++;
+		for( int i=0; i<width; i++ )
+			line("f" + i + " " + FIELD_TYPES[i % FIELD_TYPES.length] + ";");
+		line("next *S" + u + ";");
+		indent--;
+		line("};");
+
+		// an array with a composite literal
+		StringBuilder sb = new StringBuilder();
+		sb.append("var L").append(u).append(" = [").append(literal).append("]int{ ");
+		for( int i=0; i<literal; i++ ) {
+			sb.append(rnd.nextInt(10000));
+			if (i < literal-1) {
+				sb.append(',');
+				space(sb);
+			}
+		}
+		sb.append(" };");
+		line(sb.toString());
+		line("");
+
+		for( int f=0; f<funcs; f++ )
+			writeFunction(u, f);
+	}
+
+	// F<u>_<f>(a, b int) int; it may call the function before it
+	private void writeFunction( int u, int f ) {
+		line("func F" + u + "_" + f + "(a int, b int) int {");
+		indent++;
+		ints.clear();
+		ints.add("a");
+		ints.add("b");
+		ints.add("K" + u + "_" + rnd.nextInt(consts));
+		line("var s S" + u + " = " + structLiteral(u) + ";");
+		ints.add("s.f0");
+		block(0);
+		if (f > 0 || u > 0) {
+			String callee = f > 0 ? "F" + u + "_" + (f-1) : "F" + (u-1) + "_" + (funcs-1);
+			line("v0 = v0 + " + callee + "(b, " + intOperand() + ");");
+		}
+		line("return v0 + s.f0 + L" + u + "[" + rnd.nextInt(literal) + "];");
+		indent--;
+		line("};");
+		line("");
+	}
+
+	// the statements of a block at nesting level d
+	private void block( int d ) {
+		int mark = ints.size();
+		String v = "v" + d;
+		line("var " + v + " int = " + intExpr(expr) + ";");
+		ints.add(v);
+		if (d+1 < depth) {
+			switch(rnd.nextInt(3)) {
+				case 0:
+					line("if " + condition() + " {");
+					indent++;
+					block(d+1);
+					indent--;
+					line("} else {");
+					indent++;
+					line(v + " = " + intExpr(expr) + ";");
+					indent--;
+					line("};");
+					break;
+				case 1: {
+					String i = "i" + d;
+					line("for " + i + " := 0; " + i + " < " + intOperand() + "; " + i + "++ {");
+					indent++;
+					ints.add(i);
+					block(d+1);
+					ints.remove(ints.size()-1);
+					indent--;
+					line("};");
+					break;
+				}
+				default:
+					line("for " + condition() + " {");
+					indent++;
+					block(d+1);
+					line("break;");
+					indent--;
+					line("};");
+					break;
+			}
+		}
+		line(v + " = " + v + " + " + intExpr(Math.max(1, expr/2)) + ";");
+		if (d > 0)
+			line("v" + (d-1) + " = v" + (d-1) + " - " + v + ";");
+		while( ints.size() > mark )
+			ints.remove(ints.size()-1);
+	}
+
+	// an int expression with n operands
+	private String intExpr( int n ) {
+		StringBuilder sb = new StringBuilder();
+		intExpr(sb, n);
+		return sb.toString();
+	}
+
+	private void intExpr( StringBuilder sb, int n ) {
+		if (n <= 1) {
+			sb.append(intOperand());
+			return;
+		}
+		int k = 1 + rnd.nextInt(n-1);
+		boolean paren = n > 2 && rnd.nextInt(4) == 0;
+		if (paren) sb.append('(');
+		intExpr(sb, k);
+		switch(rnd.nextInt(12)) {
+			case 0:
+				sb.append(" << ").append(1 + rnd.nextInt(4));
+				break;
+			case 1:
+				sb.append(" % ").append(3 + rnd.nextInt(50));
+				break;
+			case 2:  // a divisor which is not a constant, and is never zero
+				sb.append(" / (").append(variable()).append(" | 1)");
+				break;
+			default:
+				break;
+		}
+		sb.append(' ').append(INT_OPS[rnd.nextInt(INT_OPS.length)]);
+		space(sb);
+		intExpr(sb, n-k);
+		if (paren) sb.append(')');
+	}
+
+	private String condition() {
+		String c = intOperand() + " " + REL_OPS[rnd.nextInt(REL_OPS.length)] + " " + intExpr(2);
+		switch(rnd.nextInt(4)) {
+			case 0:  return c + " && " + intOperand() + " != " + rnd.nextInt(10);
+			case 1:  return c + " || !(" + intOperand() + " < " + intOperand() + ")";
+			default: return c;
+		}
+	}
+
+	private String intOperand() {
+		switch(rnd.nextInt(5)) {
+			case 0:  return Integer.toString(rnd.nextInt(1000));
+			case 1:  return "L" + unit + "[" + rnd.nextInt(literal) + "]";
+			default: return ints.get(rnd.nextInt(ints.size()));
+		}
+	}
+
+	// an int variable (not a constant)
+	private String variable() {
+		for( ; ; ) {
+			String s = ints.get(rnd.nextInt(ints.size()));
+			if (!s.startsWith("K")) return s;
+		}
+	}
+
+	private String structLiteral( int u ) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("S").append(u).append("{ ");
+		for( int i=0; i<width; i++ ) {
+			switch(FIELD_TYPES[i % FIELD_TYPES.length]) {
+				case "int":     sb.append(i == 0 ? "a" : Integer.toString(rnd.nextInt(1000)));  break;
+				case "float64": sb.append(rnd.nextInt(100)).append('.').append(rnd.nextInt(10));  break;
+				case "string":  sb.append("\"s").append(i).append('"');  break;
+				default:        sb.append(rnd.nextBoolean());  break;
+			}
+			sb.append(',');
+			space(sb);
+		}
+		sb.append("nil }");
+		return sb.toString();
+	}
+
+	// Appends a space, or starts a new line if the current one is long.
+	// It is only called after an operator or a comma, where Go would not
+	// insert a semicolon at the end of the line.
+	private void space( StringBuilder sb ) {
+		int start = sb.lastIndexOf("\n") + 1;
+		if (sb.length() - start < LINE_WIDTH) {
+			sb.append(' ');
+			return;
+		}
+		sb.append('\n');
+		for( int i=0; i<=indent; i++ )
+			sb.append('\t');
+	}
+
+	private void line( String s ) {
+		for( int i=0; i<indent; i++ )
+			out.print('\t');
+		out.print(s);
+		out.print('\n');
+		lines++;
+		for( int i=s.indexOf('\n'); i >= 0; i=s.indexOf('\n', i+1) )
+			lines++;
+	}
+}
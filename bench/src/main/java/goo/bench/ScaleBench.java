@@ -0,0 +1,45 @@
+// ScaleBench.java
+//
+// Measures the whole front end (lexing, parsing and both passes) on
+// programs written by GooGen, to show how the time and the allocation
+// grow with the size and the shape of the input. The default sweep is
+// small enough for a routine run; larger ones are selected with -p, e.g.
+//     java -jar target/benchmarks.jar ScaleBench -p lines=1000000 -p shape=NESTING
+
+package goo.bench;
+
+import org.openjdk.jmh.annotations.*;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScaleBench {
+	@Param({"1000", "10000", "100000"})
+	long lines;
+
+	@Param({"MIXED"})
+	GooGen.Shape shape;
+
+	@Param({"1"})
+	long seed;
+
+	Frontend goo;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		goo = Frontend.create();
+		goo.setSource(GooGen.generate(seed, shape, lines));
+	}
+
+	@Benchmark
+	public int frontEnd() {
+		goo.tokenize();
+		goo.parse();
+		goo.pass1();
+		return goo.pass2();
+	}
+}
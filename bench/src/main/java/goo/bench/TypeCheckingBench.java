@@ -0,0 +1,52 @@
+// TypeCheckingBench.java
+//
+// Measures TypeChecking.checkAssignability, identicalTypes and checkBinOp
+// on a fixed set of operand pairs built from the types of the corpus
+// (see GooFrontend.prepareTypeChecks). Each invocation goes once through
+// the whole set, so the time is for all the pairs together.
+
+package goo.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TypeCheckingBench {
+	Frontend goo;
+	int pairs;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		goo = Frontend.create();
+		goo.setSource(Corpus.source(1));
+		goo.tokenize();
+		goo.parse();
+		goo.pass1();
+		goo.pass2();
+		pairs = goo.prepareTypeChecks();
+	}
+
+	@Benchmark
+	public void checkAssignability( Blackhole bh ) {
+		for( int i=0; i<pairs; i++ )
+			bh.consume(goo.checkAssignability(i));
+	}
+
+	@Benchmark
+	public void identicalTypes( Blackhole bh ) {
+		for( int i=0; i<pairs; i++ )
+			bh.consume(goo.identicalTypes(i));
+	}
+
+	@Benchmark
+	public void checkBinOp( Blackhole bh ) {
+		for( int i=0; i<pairs; i++ )
+			bh.consume(goo.checkBinOp(i));
+	}
+}